@@ -0,0 +1,51 @@
+package com.backend.config;
+
+import com.backend.service.BlobService;
+import com.backend.storage.BlobStorage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 启动时回收内容存储：文件在磁盘上跨重启保留，而 stored_blob 等元数据可能随数据库重建而丢失
+ * （默认的内存库每次启动都是空的）。按课程文件与头像的引用补登记计数，删除没有计数记录的孤儿文件，
+ * 并清理中断上传残留的临时文件
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobStorageReconciler implements ApplicationRunner {
+    /** 只清理足够旧的临时文件，避免删掉正在进行的上传 */
+    private static final Duration STAGED_MAX_AGE = Duration.ofHours(1);
+
+    private final JdbcTemplate jdbc;
+    private final BlobService blobService;
+    private final BlobStorage blobStorage;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Map<String, Long> references = new HashMap<>();
+        jdbc.query("SELECT storage_key, COUNT(*) FROM course_file GROUP BY storage_key",
+                rs -> {
+                    references.merge(rs.getString(1), rs.getLong(2), Long::sum);
+                });
+        jdbc.query("SELECT blob_hash, COUNT(*) FROM user_avatar GROUP BY blob_hash",
+                rs -> {
+                    references.merge(rs.getString(1), rs.getLong(2), Long::sum);
+                });
+        BlobService.Reconciled result = blobService.reconcile(references);
+        blobStorage.purgeStaged(Instant.now().minus(STAGED_MAX_AGE));
+        if (result.registered() > 0 || result.deleted() > 0) {
+            log.info("Reconciled blob storage: {} registered, {} orphaned blobs deleted",
+                    result.registered(), result.deleted());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.backend.config;
+
+import com.backend.entity.Graph;
+import com.backend.entity.GraphNode;
+import com.backend.entity.GraphRelation;
+import com.backend.repository.GraphNodeRepository;
+import com.backend.repository.GraphRelationRepository;
+import com.backend.repository.GraphRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 启动时将旧版 graph 表中的 JSON 节点/关系迁移到 graph_node / graph_relation，
+ * 迁移后清空 JSON 列；已迁移的课程不会重复处理
+ */
+@Component
+@RequiredArgsConstructor
+public class GraphJsonMigration implements ApplicationRunner {
+    private final GraphRepository graphRepository;
+    private final GraphNodeRepository graphNodeRepository;
+    private final GraphRelationRepository graphRelationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Long> courseIds = graphRepository.findCourseIdsWithLegacyJson();
+        for (Long courseId : courseIds) {
+            transactionTemplate.executeWithoutResult(status -> migrate(courseId));
+        }
+    }
+
+    private void migrate(Long courseId) {
+        Graph g = graphRepository.findById(courseId).orElse(null);
+        if (g == null) return;
+        // 已有规范化数据时只清理 JSON，避免重复导入
+        if (!graphNodeRepository.existsByCourseId(courseId)) {
+            if (g.getNodes() != null) {
+                graphNodeRepository.saveAll(g.getNodes().stream()
+                        .map(n -> GraphNode.from(courseId, n))
+                        .toList());
+            }
+            if (g.getRelations() != null) {
+                graphRelationRepository.saveAll(g.getRelations().stream()
+                        .map(r -> GraphRelation.from(courseId, r))
+                        .toList());
+            }
+        }
+        g.setNodes(null);
+        g.setRelations(null);
+        graphRepository.save(g);
+    }
+}
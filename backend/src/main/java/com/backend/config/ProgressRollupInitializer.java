@@ -0,0 +1,60 @@
+package com.backend.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时补齐进度汇总：为尚未计数的课程（如 data.sql 导入的课程）统计测验数；
+ * progress_rollup 为空时由 progress 与 note 分组聚合一次性构建，之后由写路径增量维护
+ */
+@Component
+@RequiredArgsConstructor
+public class ProgressRollupInitializer implements ApplicationRunner {
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+
+    private record Key(long userId, long courseId) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbc.update("UPDATE course SET quiz_count = (SELECT COUNT(*) FROM quiz q WHERE q.course_id = course.id) "
+                    + "WHERE quiz_count IS NULL");
+            Long rollups = jdbc.queryForObject("SELECT COUNT(*) FROM progress_rollup", Long.class);
+            if (rollups == null || rollups == 0) build();
+        });
+    }
+
+    private void build() {
+        // [已完成测验数, 分数和, 分数计数, 笔记数]
+        Map<Key, long[]> rows = new LinkedHashMap<>();
+        jdbc.query("SELECT user_id, course_id, COUNT(*), COALESCE(SUM(score), 0), COUNT(score) FROM progress "
+                        + "WHERE completed = TRUE AND quiz_id IS NOT NULL GROUP BY user_id, course_id",
+                rs -> {
+                    long[] r = rows.computeIfAbsent(new Key(rs.getLong(1), rs.getLong(2)), k -> new long[4]);
+                    r[0] = rs.getLong(3);
+                    r[1] = rs.getLong(4);
+                    r[2] = rs.getLong(5);
+                });
+        jdbc.query("SELECT author_id, course_id, COUNT(*) FROM note WHERE author_id IS NOT NULL GROUP BY author_id, course_id",
+                rs -> {
+                    rows.computeIfAbsent(new Key(rs.getLong(1), rs.getLong(2)), k -> new long[4])[3] = rs.getLong(3);
+                });
+        if (rows.isEmpty()) return;
+
+        List<Object[]> inserts = new ArrayList<>(rows.size());
+        rows.forEach((k, r) -> inserts.add(new Object[]{k.userId(), k.courseId(), r[0], r[1], r[2], r[3]}));
+        jdbc.batchUpdate("INSERT INTO progress_rollup (user_id, course_id, completed_quizzes, score_sum, score_count, note_count) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", inserts);
+    }
+}
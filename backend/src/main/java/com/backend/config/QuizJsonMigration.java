@@ -0,0 +1,50 @@
+package com.backend.config;
+
+import com.backend.entity.Question;
+import com.backend.entity.Quiz;
+import com.backend.repository.QuestionRepository;
+import com.backend.repository.QuizRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动时将旧版 quiz 表中的 JSON 题目迁移到 question 表，
+ * 迁移后清空 JSON 列；已迁移的测验不会重复处理
+ */
+@Component
+@RequiredArgsConstructor
+public class QuizJsonMigration implements ApplicationRunner {
+    private final QuizRepository quizRepository;
+    private final QuestionRepository questionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> quizIds = quizRepository.findIdsWithLegacyQuestions();
+        for (String quizId : quizIds) {
+            transactionTemplate.executeWithoutResult(status -> migrate(quizId));
+        }
+    }
+
+    private void migrate(String quizId) {
+        Quiz quiz = quizRepository.findById(quizId).orElse(null);
+        if (quiz == null) return;
+        // 已有题目行时只清理 JSON，避免重复导入
+        if (!questionRepository.existsByQuizId(quizId)) {
+            List<Quiz.Question> questions = quiz.getLegacyQuestions();
+            List<Question> rows = new ArrayList<>(questions.size());
+            for (int i = 0; i < questions.size(); i++) {
+                rows.add(Question.from(quiz.getCourseId(), quizId, i, questions.get(i)));
+            }
+            questionRepository.saveAll(rows);
+        }
+        quiz.setLegacyQuestions(null);
+        quizRepository.save(quiz);
+    }
+}
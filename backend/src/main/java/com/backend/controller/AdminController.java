@@ -0,0 +1,51 @@
+package com.backend.controller;
+
+import com.backend.entity.User;
+import com.backend.service.UserService;
+import com.backend.util.PrincipalCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 管理员接口（/api/admin/** 仅 ADMIN 可访问，见 SecurityConfig）
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+    private final UserService userService;
+    private final PrincipalCache principalCache;
+
+    @PutMapping("/users/{userId}/role")
+    public ResponseEntity<Map<String, Object>> changeRole(@PathVariable Long userId, @RequestBody Map<String, String> request) {
+        User.Role role;
+        try {
+            role = User.Role.valueOf(request.getOrDefault("role", ""));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "role 必须为 USER 或 ADMIN");
+        }
+        User updated = userService.changeRole(userId, role);
+        Map<String, Object> body = new HashMap<>();
+        body.put("id", updated.getId());
+        body.put("username", updated.getUsername());
+        body.put("role", updated.getRole().name());
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/cache/principals")
+    public ResponseEntity<PrincipalCache.Stats> principalCacheStats() {
+        return ResponseEntity.ok(principalCache.stats());
+    }
+
+    @DeleteMapping("/cache/principals")
+    public ResponseEntity<Void> clearPrincipalCache() {
+        principalCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -4,6 +4,9 @@ import com.backend.entity.CourseFile;
 import com.backend.entity.User;
 import com.backend.service.CourseFileService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -13,6 +16,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +46,7 @@ public class CourseFileController {
                     m.put("id", f.getId());
                     m.put("filename", f.getFilename());
                     m.put("contentType", f.getContentType());
+                    m.put("size", f.getSize());
                     m.put("uploadedBy", f.getUploadedBy());
                     m.put("createdAt", f.getCreatedAt());
                     return m;
@@ -59,20 +65,31 @@ public class CourseFileController {
         body.put("id", saved.getId());
         body.put("filename", saved.getFilename());
         body.put("contentType", saved.getContentType());
+        body.put("size", saved.getSize());
         body.put("uploadedBy", saved.getUploadedBy());
         body.put("createdAt", saved.getCreatedAt());
         return ResponseEntity.status(HttpStatus.CREATED).body(body);
     }
 
+    /**
+     * 以 Resource 流式返回文件内容；Range 请求（206）与基于 ETag/Last-Modified 的条件请求（304）
+     * 由 Spring MVC 根据响应头自动处理
+     */
     @GetMapping("/{fileId}")
-    public ResponseEntity<byte[]> download(@PathVariable Long courseId, @PathVariable Long fileId) {
+    public ResponseEntity<Resource> download(@PathVariable Long courseId, @PathVariable Long fileId) {
         CourseFile f = courseFileService.getFile(courseId, fileId);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType(f.getContentType()));
-        headers.setContentDispositionFormData("attachment", f.getFilename());
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(f.getFilename(), StandardCharsets.UTF_8)
+                .build());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
         return ResponseEntity.ok()
                 .headers(headers)
-                .body(f.getData());
+                .eTag(f.getEtag())
+                .lastModified(f.getCreatedAt().atZone(ZoneId.systemDefault()))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(courseFileService.openContent(f));
     }
 
     @DeleteMapping("/{fileId}")
@@ -2,15 +2,22 @@ package com.backend.controller;
 
 import com.backend.entity.Graph;
 import com.backend.entity.User;
+import com.backend.graph.CompactGraph;
 import com.backend.service.CourseService;
 import com.backend.service.GraphService;
+import com.backend.service.GraphTransferService;
+import com.backend.service.GraphTraversalService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +28,8 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class GraphController {
     private final GraphService graphService;
+    private final GraphTraversalService graphTraversalService;
+    private final GraphTransferService graphTransferService;
     private final CourseService courseService;
 
     private User currentUser() {
@@ -111,4 +120,82 @@ public class GraphController {
         graphService.deleteRelation(courseId, relationId);
         return ResponseEntity.noContent().build();
     }
+
+    // ---- Batch ----
+
+    @PostMapping("/{courseId}/batch")
+    public ResponseEntity<GraphService.BatchResult> applyBatch(@PathVariable Long courseId, @RequestBody GraphService.BatchRequest request) {
+        User user = currentUser();
+        if (!isWriter(courseId, user)) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not course owner or admin");
+
+        return ResponseEntity.ok(graphService.applyBatch(courseId, request));
+    }
+
+    // ---- Import / Export ----
+
+    @GetMapping("/{courseId}/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable Long courseId,
+            @RequestParam(defaultValue = "jsonl") String format
+    ) {
+        GraphTransferService.Format f = GraphTransferService.Format.parse(format);
+        StreamingResponseBody body = graphTransferService.export(courseId, f);
+        return ResponseEntity.ok()
+                .contentType(f.mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("graph-" + courseId + "." + f.extension)
+                        .build().toString())
+                .body(body);
+    }
+
+    @PostMapping("/{courseId}/import")
+    public ResponseEntity<GraphTransferService.ImportResult> importGraph(
+            @PathVariable Long courseId,
+            @RequestParam(defaultValue = "jsonl") String format,
+            @RequestParam(defaultValue = "false") boolean replace,
+            InputStream body
+    ) {
+        User user = currentUser();
+        if (!isWriter(courseId, user)) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not course owner or admin");
+
+        GraphTransferService.Format f = GraphTransferService.Format.parse(format);
+        return ResponseEntity.ok(graphTransferService.importGraph(courseId, f, body, replace));
+    }
+
+    // ---- Traversal ----
+
+    @GetMapping("/{courseId}/traversal/neighborhood")
+    public ResponseEntity<GraphTraversalService.Neighborhood> neighborhood(
+            @PathVariable Long courseId,
+            @RequestParam String start,
+            @RequestParam(defaultValue = "1") int depth,
+            @RequestParam(defaultValue = "both") String direction,
+            @RequestParam(defaultValue = "bfs") String mode,
+            @RequestParam(required = false) String type
+    ) {
+        return ResponseEntity.ok(graphTraversalService.neighborhood(courseId, start, depth, direction, mode, type));
+    }
+
+    @GetMapping("/{courseId}/traversal/path")
+    public ResponseEntity<GraphTraversalService.PathResult> shortestPath(
+            @PathVariable Long courseId,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false) String type
+    ) {
+        return ResponseEntity.ok(graphTraversalService.shortestPath(courseId, from, to, type));
+    }
+
+    @GetMapping("/{courseId}/traversal/study-order")
+    public ResponseEntity<CompactGraph.TopologicalOrder> studyOrder(
+            @PathVariable Long courseId,
+            @RequestParam(required = false) String type
+    ) {
+        return ResponseEntity.ok(graphTraversalService.studyOrder(courseId, type));
+    }
+
+    @GetMapping("/{courseId}/traversal/components")
+    public ResponseEntity<GraphTraversalService.Components> components(@PathVariable Long courseId) {
+        return ResponseEntity.ok(graphTraversalService.components(courseId));
+    }
 }
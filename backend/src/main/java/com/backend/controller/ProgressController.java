@@ -48,12 +48,16 @@ public class ProgressController {
     }
 
     /**
-     * 获取用户在所有课程的进度列表
+     * 获取用户在指定课程（courseIds）或所有有进度课程的进度列表
      */
     @GetMapping("/courses")
-    public ResponseEntity<List<ProgressService.CourseProgressDTO>> getAllCourseProgress() {
+    public ResponseEntity<List<ProgressService.CourseProgressDTO>> getAllCourseProgress(
+            @RequestParam(required = false) List<Long> courseIds
+    ) {
         User user = currentUser();
-        List<ProgressService.CourseProgressDTO> progressList = progressService.getAllCourseProgress(user.getId());
+        List<ProgressService.CourseProgressDTO> progressList = courseIds == null || courseIds.isEmpty()
+                ? progressService.getAllCourseProgress(user.getId())
+                : progressService.getCourseProgressByCourseIds(user.getId(), courseIds);
         return ResponseEntity.ok(progressList);
     }
 
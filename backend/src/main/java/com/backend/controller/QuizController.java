@@ -2,18 +2,20 @@ package com.backend.controller;
 
 import com.backend.entity.Quiz;
 import com.backend.entity.User;
+import com.backend.quiz.QuestionAnalytics;
 import com.backend.service.CourseService;
+import com.backend.service.ExamSessionService;
+import com.backend.service.QuizAttemptService;
 import com.backend.service.QuizService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.net.URI;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 @RestController
@@ -21,6 +23,8 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class QuizController {
     private final QuizService quizService;
+    private final QuizAttemptService quizAttemptService;
+    private final ExamSessionService examSessionService;
     private final CourseService courseService;
 
     private User currentUser() {
@@ -34,15 +38,20 @@ public class QuizController {
         return user.getRole() == User.Role.ADMIN || Objects.equals(course.getAuthorId(), user.getId());
     }
 
+    // 普通用户直接返回缓存的学生视图 JSON；作者/ADMIN 返回含答案的完整视图
     @GetMapping
-    public ResponseEntity<List<Quiz>> list(@PathVariable Long courseId) {
+    public ResponseEntity<?> list(@PathVariable Long courseId) {
         User user = currentUser();
+        byte[] json = quizService.listStudentViews(courseId, user);
+        if (json != null) return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
         return ResponseEntity.ok(quizService.listQuizzes(courseId, user));
     }
 
     @GetMapping("/{quizId}")
-    public ResponseEntity<Quiz> get(@PathVariable Long courseId, @PathVariable String quizId) {
+    public ResponseEntity<?> get(@PathVariable Long courseId, @PathVariable String quizId) {
         User user = currentUser();
+        byte[] json = quizService.getStudentView(courseId, quizId, user);
+        if (json != null) return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
         return ResponseEntity.ok(quizService.getQuiz(courseId, quizId, user));
     }
 
@@ -70,14 +79,86 @@ public class QuizController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/{quizId}/variant")
+    public ResponseEntity<QuizService.VariantView> variant(
+            @PathVariable Long courseId,
+            @PathVariable String quizId
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(quizService.getVariant(courseId, quizId, user));
+    }
+
     @PostMapping("/{quizId}/attempts")
-    public ResponseEntity<Map<String, Object>> submitAttempt(
+    public ResponseEntity<QuizService.AttemptResult> submitAttempt(
             @PathVariable Long courseId,
             @PathVariable String quizId,
             @RequestBody QuizService.AttemptRequest request
     ) {
         User user = currentUser();
-        Map<String, Object> result = quizService.submitAttempt(courseId, quizId, request, user);
+        QuizService.AttemptResult result = quizService.submitAttempt(courseId, quizId, request, user);
         return ResponseEntity.ok(result);
     }
+
+    @PostMapping("/{quizId}/exam-sessions")
+    public ResponseEntity<ExamSessionService.SessionView> startExam(@PathVariable Long courseId, @PathVariable String quizId) {
+        User user = currentUser();
+        return ResponseEntity.ok(examSessionService.start(courseId, quizId, user));
+    }
+
+    @GetMapping("/{quizId}/exam-sessions/{sessionId}")
+    public ResponseEntity<ExamSessionService.SessionView> getExam(
+            @PathVariable Long courseId,
+            @PathVariable String quizId,
+            @PathVariable String sessionId
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(examSessionService.get(courseId, quizId, sessionId, user));
+    }
+
+    @PutMapping("/{quizId}/exam-sessions/{sessionId}/answers")
+    public ResponseEntity<ExamSessionService.SaveResult> saveExamAnswers(
+            @PathVariable Long courseId,
+            @PathVariable String quizId,
+            @PathVariable String sessionId,
+            @RequestBody QuizService.AttemptRequest request
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(examSessionService.save(courseId, quizId, sessionId, request, user));
+    }
+
+    @PostMapping("/{quizId}/exam-sessions/{sessionId}/submit")
+    public ResponseEntity<QuizService.AttemptResult> submitExam(
+            @PathVariable Long courseId,
+            @PathVariable String quizId,
+            @PathVariable String sessionId,
+            @RequestBody(required = false) QuizService.AttemptRequest request
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(examSessionService.submit(courseId, quizId, sessionId, request, user));
+    }
+
+    @GetMapping("/{quizId}/attempts")
+    public ResponseEntity<QuizAttemptService.AttemptPage> listAttempts(
+            @PathVariable Long courseId,
+            @PathVariable String quizId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(quizAttemptService.listAttempts(user.getId(), courseId, quizId, before, size));
+    }
+
+    @GetMapping("/{quizId}/attempts/distribution")
+    public ResponseEntity<QuizAttemptService.Distribution> attemptDistribution(@PathVariable Long courseId, @PathVariable String quizId) {
+        User user = currentUser();
+        if (!isWriter(courseId, user)) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not course owner or admin");
+        return ResponseEntity.ok(quizAttemptService.distribution(courseId, quizId));
+    }
+
+    @GetMapping("/{quizId}/analytics")
+    public ResponseEntity<QuestionAnalytics.Snapshot> analytics(@PathVariable Long courseId, @PathVariable String quizId) {
+        User user = currentUser();
+        if (!isWriter(courseId, user)) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not course owner or admin");
+        return ResponseEntity.ok(quizAttemptService.analytics(courseId, quizId));
+    }
 }
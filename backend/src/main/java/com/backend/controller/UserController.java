@@ -1,13 +1,17 @@
 package com.backend.controller;
 
 import com.backend.entity.User;
+import com.backend.entity.UserAvatar;
 import com.backend.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -38,7 +42,7 @@ public class UserController {
         body.put("role", full.getRole().name());
         body.put("nickname", full.getNickname());
         body.put("bio", full.getBio());
-        body.put("hasAvatar", full.getAvatar() != null && full.getAvatar().length > 0);
+        body.put("hasAvatar", userService.hasAvatar(full.getId()));
         return ResponseEntity.ok(body);
     }
 
@@ -54,20 +58,30 @@ public class UserController {
         body.put("role", updated.getRole().name());
         body.put("nickname", updated.getNickname());
         body.put("bio", updated.getBio());
-        body.put("hasAvatar", updated.getAvatar() != null && updated.getAvatar().length > 0);
+        body.put("hasAvatar", userService.hasAvatar(updated.getId()));
         return ResponseEntity.ok(body);
     }
 
-    @GetMapping(value = "/me/avatar", produces = { MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, "image/gif", "image/webp" })
-    public ResponseEntity<byte[]> getAvatar() {
+    @GetMapping("/me/avatar")
+    public ResponseEntity<Resource> getAvatar(WebRequest webRequest) {
         User user = currentUser();
-        User full = userService.getById(user.getId());
-        if (full.getAvatar() == null || full.getAvatar().length == 0) {
+        UserAvatar avatar = userService.getAvatar(user.getId()).orElse(null);
+        if (avatar == null) {
             return ResponseEntity.noContent().build();
         }
+        // 头像地址固定，浏览器每次都需校验；ETag 未变时不读取图片内容
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (webRequest.checkNotModified(avatar.getBlobHash())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(avatar.getBlobHash())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
         return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG)
-                .body(full.getAvatar());
+                .contentType(MediaType.parseMediaType(avatar.getContentType()))
+                .eTag(avatar.getBlobHash())
+                .cacheControl(cacheControl)
+                .body(userService.openAvatar(avatar));
     }
 
     @PostMapping(value = "/me/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -2,6 +2,7 @@ package com.backend.controller;
 
 import com.backend.entity.User;
 import com.backend.entity.WrongQuestion;
+import com.backend.quiz.AttemptEvent;
 import com.backend.service.WrongQuestionService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -31,10 +32,12 @@ public class WrongQuestionController {
     @GetMapping
     public ResponseEntity<List<WrongQuestion>> list(
             @PathVariable Long courseId,
-            @RequestParam(required = false) Boolean mastered
+            @RequestParam(required = false) Boolean mastered,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer size
     ) {
         User user = currentUser();
-        List<WrongQuestion> wrongQuestions = wrongQuestionService.getWrongQuestions(user.getId(), courseId, mastered);
+        List<WrongQuestion> wrongQuestions = wrongQuestionService.getWrongQuestions(user.getId(), courseId, mastered, before, size);
         return ResponseEntity.ok(wrongQuestions);
     }
 
@@ -53,6 +56,19 @@ public class WrongQuestionController {
         return ResponseEntity.ok(wrongQuestion);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<WrongQuestion>> addBatch(
+            @PathVariable Long courseId,
+            @RequestBody List<AddWrongQuestionRequest> request
+    ) {
+        User user = currentUser();
+        List<AttemptEvent.WrongAnswer> answers = request == null ? List.of() : request.stream()
+                .map(r -> r == null ? new AttemptEvent.WrongAnswer(null, null)
+                        : new AttemptEvent.WrongAnswer(r.getQuestionId(), r.getUserAnswer()))
+                .toList();
+        return ResponseEntity.ok(wrongQuestionService.addWrongQuestions(user.getId(), courseId, answers));
+    }
+
     @PutMapping("/{wrongQuestionId}/mastered")
     public ResponseEntity<WrongQuestion> markAsMastered(
             @PathVariable Long courseId,
@@ -76,13 +92,23 @@ public class WrongQuestionController {
     @PostMapping("/{wrongQuestionId}/practice")
     public ResponseEntity<WrongQuestion> practice(
             @PathVariable Long courseId,
-            @PathVariable Long wrongQuestionId
+            @PathVariable Long wrongQuestionId,
+            @RequestParam(required = false) Integer quality
     ) {
         User user = currentUser();
-        WrongQuestion wrongQuestion = wrongQuestionService.incrementPracticeCount(user.getId(), wrongQuestionId);
+        WrongQuestion wrongQuestion = wrongQuestionService.incrementPracticeCount(user.getId(), wrongQuestionId, quality);
         return ResponseEntity.ok(wrongQuestion);
     }
 
+    @GetMapping("/due")
+    public ResponseEntity<List<WrongQuestion>> due(
+            @PathVariable Long courseId,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        User user = currentUser();
+        return ResponseEntity.ok(wrongQuestionService.getDueQuestions(user.getId(), courseId, limit));
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Long>> getStats(@PathVariable Long courseId) {
         User user = currentUser();
@@ -0,0 +1,47 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 逐条重试后仍无法写入的答卷事件，由 AttemptDeadLetters 以 JDBC 写入，供排查后手动补写；
+ * payload 为事件其余字段（题目版本、分数、逐题结果、错题）的 JSON
+ */
+@Entity
+@Table(name = "attempt_dead_letter",
+       indexes = @Index(name = "idx_attempt_dead_letter_user", columnList = "user_id, course_id, quiz_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttemptDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "quiz_id", nullable = false)
+    private String quizId;
+
+    @Column(name = "submitted_at", nullable = false)
+    private LocalDateTime submittedAt;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    /**
+     * 最后一次写入失败的异常信息
+     */
+    @Column(length = 1000)
+    private String error;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
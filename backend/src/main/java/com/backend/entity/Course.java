@@ -1,5 +1,6 @@
 package com.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -44,11 +45,22 @@ public class Course {
 
     private LocalDateTime createdAt;
 
+    /**
+     * 课程中的测验数，由 QuizService 在创建/删除测验时增减；
+     * 不随实体更新写入，避免课程编辑覆盖并发的增减
+     */
+    @JsonIgnore
+    @Column(name = "quiz_count", updatable = false)
+    private Long quizCount;
+
     @PrePersist
     public void prePersist() {
         if (this.createdAt == null) {
             this.createdAt = LocalDateTime.now();
         }
+        if (this.quizCount == null) {
+            this.quizCount = 0L;
+        }
     }
 
     public enum Level {
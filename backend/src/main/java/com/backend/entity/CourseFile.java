@@ -6,7 +6,8 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "course_file")
+@Table(name = "course_file",
+       indexes = @Index(columnList = "course_id, created_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,9 +27,17 @@ public class CourseFile {
     @Column(name = "content_type", nullable = false, length = 128)
     private String contentType;
 
-    @Lob
-    @Column(name = "data", nullable = false)
-    private byte[] data;
+    /** 文件内容的 SHA-256，即 stored_blob 的键；表中不保存文件内容 */
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
+
+    /** 字节数 */
+    @Column(nullable = false)
+    private Long size;
+
+    /** 内容的 SHA-256（十六进制），用作 ETag */
+    @Column(nullable = false, length = 64)
+    private String etag;
 
     /** 上传者用户 id */
     @Column(name = "uploaded_by")
@@ -0,0 +1,72 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 限时考试会话。进行中的会话状态保存在 ExamSessionStore 的内存中，本表只保存定期快照与最终结果，
+ * 由 ExamSessionStore 以 JDBC 读写；重启后从进行中的行恢复会话
+ */
+@Entity
+@Table(name = "exam_session",
+       indexes = {
+           @Index(name = "idx_exam_session_user", columnList = "user_id, course_id, quiz_id"),
+           @Index(name = "idx_exam_session_status", columnList = "status")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExamSession {
+    public enum Status {
+        IN_PROGRESS,
+        /** 用户在截止时间前提交 */
+        SUBMITTED,
+        /** 到达截止时间，按最后保存的答案自动交卷 */
+        EXPIRED
+    }
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "quiz_id", nullable = false)
+    private String quizId;
+
+    /**
+     * 开始考试时推导的作答序号，交卷时按它重新派生抽题/乱序版本
+     */
+    private Integer attempt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime deadline;
+
+    /**
+     * 已保存的答案快照：{"题目id": [选项索引...]}
+     */
+    @Column(columnDefinition = "TEXT")
+    private String answers;
+
+    @Column(name = "saved_at")
+    private LocalDateTime savedAt;
+
+    private Integer score;
+
+    @Column(name = "submitted_at")
+    private LocalDateTime submittedAt;
+}
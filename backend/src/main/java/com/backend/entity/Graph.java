@@ -27,6 +27,10 @@ public class Graph {
     @Column(name = "course_id")
     private Long courseId;
 
+    /**
+     * 旧版以 JSON 整体存储的节点与关系，仅用于迁移（见 GraphJsonMigration）；
+     * 节点与关系现存于 graph_node / graph_relation 表，迁移后这两列置空
+     */
     @Convert(converter = NodeListConverter.class)
     @Column(name = "nodes", columnDefinition = "TEXT")
     private List<Node> nodes;
@@ -79,6 +83,30 @@ public class Graph {
 
     // ----- Converters -----
 
+    public static class MetaConverter implements AttributeConverter<Map<String, Object>, String> {
+        private static final ObjectMapper M = new ObjectMapper();
+
+        @Override
+        public String convertToDatabaseColumn(Map<String, Object> attribute) {
+            try {
+                if (attribute == null) return null;
+                return M.writeValueAsString(attribute);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to convert meta to JSON", e);
+            }
+        }
+
+        @Override
+        public Map<String, Object> convertToEntityAttribute(String dbData) {
+            try {
+                if (dbData == null || dbData.isBlank()) return null;
+                return M.readValue(dbData, new TypeReference<Map<String, Object>>() {});
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to convert JSON to meta", e);
+            }
+        }
+    }
+
     public static class NodeListConverter implements AttributeConverter<List<Node>, String> {
         private static final ObjectMapper M = new ObjectMapper();
 
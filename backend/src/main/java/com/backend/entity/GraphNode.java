@@ -0,0 +1,93 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 知识图谱节点（每行一个节点），对外仍以 Graph.Node 表示
+ */
+@Entity
+@Table(name = "graph_node",
+       uniqueConstraints = {
+           @UniqueConstraint(columnNames = {"course_id", "node_id"}),
+           @UniqueConstraint(columnNames = {"course_id", "label_key"})
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GraphNode {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "graph_node_seq")
+    @SequenceGenerator(name = "graph_node_seq", sequenceName = "graph_node_seq", allocationSize = 50)
+    private Long id;
+
+    /** 乐观锁版本，防止多实例部署时并发更新互相覆盖 */
+    @Version
+    private Long version;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    /** 课程内的节点 id，如 n1 */
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private String label;
+
+    /**
+     * label 的小写形式，用于按课程不区分大小写查重（相当于 (course_id, lower(label)) 索引）
+     */
+    @Column(name = "label_key", nullable = false)
+    private String labelKey;
+
+    private String type;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Convert(converter = Graph.MetaConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private Map<String, Object> meta;
+
+    public void setLabel(String label) {
+        this.label = label;
+        this.labelKey = labelKey(label);
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void syncLabelKey() {
+        this.labelKey = labelKey(label);
+    }
+
+    public static String labelKey(String label) {
+        return label == null ? null : label.toLowerCase(Locale.ROOT);
+    }
+
+    public static GraphNode from(Long courseId, Graph.Node node) {
+        GraphNode entity = GraphNode.builder()
+                .courseId(courseId)
+                .nodeId(node.getId())
+                .type(node.getType())
+                .description(node.getDescription())
+                .meta(node.getMeta())
+                .build();
+        entity.setLabel(node.getLabel());
+        return entity;
+    }
+
+    public Graph.Node toNode() {
+        return Graph.Node.builder()
+                .id(nodeId)
+                .label(label)
+                .type(type)
+                .description(description)
+                .meta(meta)
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * 知识图谱关系（每行一条边），对外仍以 Graph.Relation 表示
+ */
+@Entity
+@Table(name = "graph_relation",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"course_id", "relation_id"}),
+       indexes = {
+           @Index(columnList = "course_id, from_node"),
+           @Index(columnList = "course_id, to_node")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GraphRelation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "graph_relation_seq")
+    @SequenceGenerator(name = "graph_relation_seq", sequenceName = "graph_relation_seq", allocationSize = 50)
+    private Long id;
+
+    /** 乐观锁版本，防止多实例部署时并发更新互相覆盖 */
+    @Version
+    private Long version;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    /** 课程内的关系 id，如 r1 */
+    @Column(name = "relation_id", nullable = false, length = 64)
+    private String relationId;
+
+    @Column(name = "from_node", nullable = false, length = 64)
+    private String fromNodeId;
+
+    @Column(name = "to_node", nullable = false, length = 64)
+    private String toNodeId;
+
+    @Column(nullable = false)
+    private String type;
+
+    private Boolean directed;
+
+    private Double weight;
+
+    @Convert(converter = Graph.MetaConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private Map<String, Object> meta;
+
+    public static GraphRelation from(Long courseId, Graph.Relation relation) {
+        return GraphRelation.builder()
+                .courseId(courseId)
+                .relationId(relation.getId())
+                .fromNodeId(relation.getFrom())
+                .toNodeId(relation.getTo())
+                .type(relation.getType())
+                .directed(relation.getDirected() == null ? Boolean.TRUE : relation.getDirected())
+                .weight(relation.getWeight())
+                .meta(relation.getMeta())
+                .build();
+    }
+
+    public Graph.Relation toRelation() {
+        return Graph.Relation.builder()
+                .id(relationId)
+                .from(fromNodeId)
+                .to(toNodeId)
+                .type(type)
+                .directed(directed)
+                .weight(weight)
+                .meta(meta)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * 业务字符串 id（q{n}、note{n}、n{n}、r{n}）的计数器，每个序列一行；
+ * 由 IdAllocator 以 JDBC 按块预留，next_value 为下一个尚未分配出去的数字
+ */
+@Entity
+@Table(name = "id_sequence")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdSequence {
+    /**
+     * 序列名，如 "quiz"、"note"、"graph-node:1"
+     */
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
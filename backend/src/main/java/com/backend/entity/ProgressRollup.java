@@ -0,0 +1,48 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * 学习进度汇总：每个 (用户, 课程) 一行，由写路径增量维护，
+ * 总体统计与课程进度直接读取，不再按请求扫描 progress / note 重新计算
+ */
+@Entity
+@Table(name = "progress_rollup",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "course_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgressRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    /**
+     * 已完成的测验数（progress 中 completed 且有 quiz_id 的行）
+     */
+    @Column(name = "completed_quizzes", nullable = false)
+    private long completedQuizzes;
+
+    /**
+     * 已完成测验的最高分之和与计数，平均分 = scoreSum / scoreCount
+     */
+    @Column(name = "score_sum", nullable = false)
+    private long scoreSum;
+
+    @Column(name = "score_count", nullable = false)
+    private long scoreCount;
+
+    /**
+     * 用户在该课程写的笔记数
+     */
+    @Column(name = "note_count", nullable = false)
+    private long noteCount;
+}
@@ -2,19 +2,27 @@ package com.backend.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * 测验题目（每行一道题），是题目的唯一存储；对外仍以 Quiz.Question 表示
+ */
 @Entity
-@Table(name = "question")
+@Table(name = "question",
+       indexes = @Index(columnList = "quiz_id, order_index"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Question {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_seq")
+    @SequenceGenerator(name = "question_seq", sequenceName = "question_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "quiz_id", nullable = false)
@@ -37,6 +45,8 @@ public class Question {
 
     @ElementCollection
     @CollectionTable(name = "question_options", joinColumns = @JoinColumn(name = "question_id"))
+    @OrderColumn(name = "option_order")
+    @BatchSize(size = 50)
     @Column(name = "option")
     private List<String> options;
 
@@ -46,6 +56,8 @@ public class Question {
      */
     @ElementCollection
     @CollectionTable(name = "question_answers", joinColumns = @JoinColumn(name = "question_id"))
+    @OrderColumn(name = "answer_order")
+    @BatchSize(size = 50)
     @Column(name = "answer_index")
     private List<Integer> answer;
 
@@ -58,6 +70,7 @@ public class Question {
     /**
      * 题目在测验中的顺序
      */
+    @Column(name = "order_index")
     private Integer orderIndex;
 
     private LocalDateTime createdAt;
@@ -68,5 +81,55 @@ public class Question {
             this.createdAt = LocalDateTime.now();
         }
     }
-}
 
+    public static Question from(Long courseId, String quizId, int orderIndex, Quiz.Question q) {
+        return Question.builder()
+                .quizId(quizId)
+                .courseId(courseId)
+                .originalId(q.getId())
+                .type(q.getType())
+                .question(q.getQuestion())
+                .options(q.getOptions() == null ? null : new ArrayList<>(q.getOptions()))
+                .answer(q.getAnswer() == null ? null : new ArrayList<>(q.getAnswer()))
+                .orderIndex(orderIndex)
+                .build();
+    }
+
+    /**
+     * 按请求中的题目更新本行，返回是否有变化；只修改有变化的字段，未变的选项/答案集合保持原样，不会触发重写
+     */
+    public boolean apply(int orderIndex, Quiz.Question q) {
+        boolean changed = false;
+        if (!Objects.equals(this.orderIndex, orderIndex)) {
+            this.orderIndex = orderIndex;
+            changed = true;
+        }
+        if (!Objects.equals(this.type, q.getType())) {
+            this.type = q.getType();
+            changed = true;
+        }
+        if (!Objects.equals(this.question, q.getQuestion())) {
+            this.question = q.getQuestion();
+            changed = true;
+        }
+        if (!Objects.equals(this.options, q.getOptions())) {
+            this.options = q.getOptions() == null ? null : new ArrayList<>(q.getOptions());
+            changed = true;
+        }
+        if (!Objects.equals(this.answer, q.getAnswer())) {
+            this.answer = q.getAnswer() == null ? null : new ArrayList<>(q.getAnswer());
+            changed = true;
+        }
+        return changed;
+    }
+
+    public Quiz.Question toQuizQuestion() {
+        return Quiz.Question.builder()
+                .id(originalId)
+                .type(type)
+                .question(question)
+                .options(options == null ? null : new ArrayList<>(options))
+                .answer(answer == null ? null : new ArrayList<>(answer))
+                .build();
+    }
+}
@@ -1,9 +1,11 @@
 package com.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,18 +26,53 @@ public class Quiz {
     @Column(nullable = false)
     private String title;
 
-    @Convert(converter = QuestionListConverter.class)
-    @Column(columnDefinition = "TEXT")
+    /**
+     * 题目，来自 question 表（按 orderIndex 排序），由 QuizService 填充；不持久化在 quiz 行中
+     */
+    @Transient
     private List<Question> questions;
 
+    /**
+     * 旧版以 JSON 整体存储的题目，仅用于迁移（见 QuizJsonMigration）；迁移后置空
+     */
+    @JsonIgnore
+    @Convert(converter = QuestionListConverter.class)
+    @Column(name = "questions", columnDefinition = "TEXT")
+    private List<Question> legacyQuestions;
+
+    /**
+     * 限时考试时长（分钟）；为空时该测验不能以限时考试方式作答
+     */
+    private Integer timeLimitMinutes;
+
+    /**
+     * 题库抽题：每个学生从 questions 中抽取的题数；为空时使用全部题目
+     */
+    private Integer drawCount;
+
+    /**
+     * 是否为每个学生打乱题目与选项顺序（判断题选项不打乱）
+     */
+    private Boolean shuffle;
+
     private Long authorId;
 
+    /**
+     * 题目内容版本：题目增删改时由 QuizRepository.bumpQuestionsVersion 加 1，只改标题、限时等设置时不变。
+     * 作答记录保存判分时的版本，逐题统计只汇总当前版本的作答
+     */
+    @JsonIgnore
+    @ColumnDefault("1")
+    @Column(name = "questions_version", updatable = false)
+    private Integer questionsVersion;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     @PrePersist
     public void prePersist() {
         if (this.createdAt == null) this.createdAt = LocalDateTime.now();
+        if (this.questionsVersion == null) this.questionsVersion = 1;
     }
 
     @PreUpdate
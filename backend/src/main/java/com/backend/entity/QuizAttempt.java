@@ -0,0 +1,72 @@
+package com.backend.entity;
+
+import com.backend.quiz.AttemptOutcome;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 测验作答历史（只追加，不更新）。每道题的对错、是否作答与所选选项以 AttemptOutcome 的紧凑编码存储；
+ * 由 AttemptBatchWriter 以 JDBC batch 写入
+ */
+@Entity
+@Table(name = "quiz_attempt",
+       indexes = {
+           @Index(name = "idx_quiz_attempt_user", columnList = "user_id, course_id, quiz_id, id"),
+           @Index(name = "idx_quiz_attempt_score", columnList = "course_id, quiz_id, score")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QuizAttempt {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "quiz_id", nullable = false)
+    private String quizId;
+
+    @Column(nullable = false)
+    private Integer score;
+
+    @Column(nullable = false)
+    private Integer total;
+
+    @Column(name = "question_count", nullable = false)
+    private Integer questionCount;
+
+    /** 判分时测验的题目内容版本（Quiz.questionsVersion） */
+    @Column(name = "questions_version")
+    private Integer questionsVersion;
+
+    /** 答对位图 */
+    @Column(name = "correct_bits", length = 1024)
+    private byte[] correctBits;
+
+    /** 已作答位图 */
+    @Column(name = "answered_bits", length = 1024)
+    private byte[] answeredBits;
+
+    /** 每题所选选项位掩码（varint 序列） */
+    @Column(name = "chosen_masks", length = 8192)
+    private byte[] chosenMasks;
+
+    /** 抽题测验中被抽中的题目位图；未抽题时为 null */
+    @Column(name = "presented_bits", length = 1024)
+    private byte[] presentedBits;
+
+    @Column(name = "submitted_at", nullable = false)
+    private LocalDateTime submittedAt;
+
+    public AttemptOutcome outcome() {
+        return new AttemptOutcome(questionCount, correctBits, answeredBits, chosenMasks, presentedBits);
+    }
+}
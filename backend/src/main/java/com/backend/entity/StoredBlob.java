@@ -0,0 +1,38 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 按内容寻址存储的二进制内容及其引用计数；课程文件与头像通过 hash 引用
+ */
+@Entity
+@Table(name = "stored_blob")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredBlob {
+    /** 内容的 SHA-256（十六进制），同时是 BlobStorage 中的存储键 */
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    /** 引用该内容的课程文件/头像数量，归零时删除 */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (this.createdAt == null) {
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+}
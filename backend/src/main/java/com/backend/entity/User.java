@@ -9,6 +9,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.util.Collection;
 import java.util.List;
 
+/**
+ * 用户账号，同时作为认证主体；只含标量字段，头像见 UserAvatar
+ */
 @Entity
 @Table(name = "account")
 @Data
@@ -26,11 +29,6 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
 
-    /** 用户头像（图片二进制，存 H2 BLOB），未上传则为 null */
-    @Lob
-    @Column(name = "avatar")
-    private byte[] avatar;
-
     /** 昵称/显示名 */
     @Column(name = "nickname", length = 64)
     private String nickname;
@@ -0,0 +1,39 @@
+package com.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户头像，与 account 表分离存储，认证加载用户时不会带出图片数据；
+ * 图片内容按内容寻址存放，相同图片只存一份
+ */
+@Entity
+@Table(name = "user_avatar")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserAvatar {
+    /** 与 User.id 一致，每个用户最多一张头像 */
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    /** 如 image/png */
+    @Column(name = "content_type", nullable = false, length = 128)
+    private String contentType;
+
+    /** 图片内容的 SHA-256，即 stored_blob 的键，同时用作 ETag */
+    @Column(name = "blob_hash", nullable = false, length = 64)
+    private String blobHash;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -1,7 +1,9 @@
 package com.backend.entity;
 
+import com.backend.quiz.SpacedRepetition;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 
@@ -11,7 +13,9 @@ import java.time.LocalDateTime;
        indexes = {
            @Index(columnList = "user_id"),
            @Index(columnList = "course_id"),
-           @Index(columnList = "user_id, course_id")
+           @Index(columnList = "user_id, course_id"),
+           @Index(name = "idx_wrong_question_added", columnList = "user_id, course_id, added_at"),
+           @Index(name = "idx_wrong_question_due", columnList = "user_id, course_id, due_at")
        })
 @Data
 @NoArgsConstructor
@@ -39,6 +43,7 @@ public class WrongQuestion {
      */
     @ElementCollection
     @CollectionTable(name = "wrong_question_user_answers", joinColumns = @JoinColumn(name = "wrong_question_id"))
+    @BatchSize(size = 50)
     @Column(name = "answer_index")
     private java.util.List<Integer> userAnswer;
 
@@ -66,6 +71,30 @@ public class WrongQuestion {
     @Column(name = "practice_count", nullable = false)
     private Integer practiceCount;
 
+    /**
+     * 复习调度（SM-2）：难度系数
+     */
+    @Column(name = "ease_factor", nullable = false)
+    private Double easeFactor;
+
+    /**
+     * 复习调度：当前复习间隔（天）
+     */
+    @Column(name = "interval_days", nullable = false)
+    private Integer intervalDays;
+
+    /**
+     * 复习调度：连续答对次数
+     */
+    @Column(nullable = false)
+    private Integer repetitions;
+
+    /**
+     * 下次应复习的时间；已掌握的错题为 null，不再进入待复习队列
+     */
+    @Column(name = "due_at")
+    private LocalDateTime dueAt;
+
     /**
      * 关联的题目信息（不持久化）
      */
@@ -83,6 +112,32 @@ public class WrongQuestion {
         if (this.practiceCount == null) {
             this.practiceCount = 0;
         }
+        if (this.easeFactor == null) {
+            this.easeFactor = SpacedRepetition.INITIAL_EASE;
+        }
+        if (this.intervalDays == null) {
+            this.intervalDays = 0;
+        }
+        if (this.repetitions == null) {
+            this.repetitions = 0;
+        }
+        if (this.dueAt == null && !this.mastered) {
+            this.dueAt = this.addedAt;
+        }
+    }
+
+    public SpacedRepetition.State schedule() {
+        return new SpacedRepetition.State(easeFactor, intervalDays, repetitions);
+    }
+
+    /**
+     * 按一次复习结果更新调度状态与下次复习时间
+     */
+    public void applySchedule(SpacedRepetition.State state, LocalDateTime reviewedAt) {
+        this.easeFactor = state.ease();
+        this.intervalDays = state.intervalDays();
+        this.repetitions = state.repetitions();
+        this.dueAt = SpacedRepetition.dueAt(state, reviewedAt);
     }
 
     @PreUpdate
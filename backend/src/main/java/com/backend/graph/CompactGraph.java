@@ -0,0 +1,408 @@
+package com.backend.graph;
+
+import com.backend.entity.Graph;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * 知识图谱的只读紧凑表示：节点映射为 0..n-1 的整数下标，出边/入边以 CSR 数组存储
+ * （offsets + targets + weights + typeIds），遍历时不产生装箱和对象分配。
+ * 无向关系（directed=false）在两个方向各存一条边。由 GraphIndex 按版本懒构建
+ */
+public final class CompactGraph {
+    public enum Direction { OUT, IN, BOTH }
+
+    private final long version;
+    private final String[] nodeIds;
+    private final Map<String, Integer> indexOf;
+    private final Map<String, Integer> typeIds;
+
+    private final int[] outStart;
+    private final int[] outTarget;
+    private final double[] outWeight;
+    private final int[] outType;
+    private final boolean[] outDirected;
+
+    private final int[] inStart;
+    private final int[] inSource;
+    private final int[] inType;
+    private final boolean[] inDirected;
+
+    CompactGraph(long version, List<Graph.Node> nodes, List<Graph.Relation> relations) {
+        this.version = version;
+        int n = nodes.size();
+        this.nodeIds = new String[n];
+        this.indexOf = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            nodeIds[i] = nodes.get(i).getId();
+            indexOf.put(nodeIds[i], i);
+        }
+        this.typeIds = new HashMap<>();
+
+        // 统计每个节点的出/入度（无向边计入两个方向）
+        int[] outCount = new int[n];
+        int[] inCount = new int[n];
+        int edges = 0;
+        for (Graph.Relation r : relations) {
+            Integer from = indexOf.get(r.getFrom());
+            Integer to = indexOf.get(r.getTo());
+            if (from == null || to == null) continue;
+            typeIds.computeIfAbsent(GraphIndex.key(r.getType()), k -> typeIds.size());
+            outCount[from]++;
+            inCount[to]++;
+            edges++;
+            if (!isDirected(r)) {
+                outCount[to]++;
+                inCount[from]++;
+                edges++;
+            }
+        }
+
+        this.outStart = prefixSums(outCount);
+        this.inStart = prefixSums(inCount);
+        this.outTarget = new int[edges];
+        this.outWeight = new double[edges];
+        this.outType = new int[edges];
+        this.outDirected = new boolean[edges];
+        this.inSource = new int[edges];
+        this.inType = new int[edges];
+        this.inDirected = new boolean[edges];
+
+        int[] outPos = Arrays.copyOf(outStart, n);
+        int[] inPos = Arrays.copyOf(inStart, n);
+        for (Graph.Relation r : relations) {
+            Integer from = indexOf.get(r.getFrom());
+            Integer to = indexOf.get(r.getTo());
+            if (from == null || to == null) continue;
+            int type = typeIds.get(GraphIndex.key(r.getType()));
+            double weight = r.getWeight() == null ? 1.0 : r.getWeight();
+            boolean directed = isDirected(r);
+            addEdge(outPos, inPos, from, to, weight, type, directed);
+            if (!directed) {
+                addEdge(outPos, inPos, to, from, weight, type, false);
+            }
+        }
+    }
+
+    private void addEdge(int[] outPos, int[] inPos, int from, int to, double weight, int type, boolean directed) {
+        int o = outPos[from]++;
+        outTarget[o] = to;
+        outWeight[o] = weight;
+        outType[o] = type;
+        outDirected[o] = directed;
+        int i = inPos[to]++;
+        inSource[i] = from;
+        inType[i] = type;
+        inDirected[i] = directed;
+    }
+
+    private static boolean isDirected(Graph.Relation r) {
+        return r.getDirected() == null || r.getDirected();
+    }
+
+    private static int[] prefixSums(int[] counts) {
+        int[] start = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            start[i + 1] = start[i] + counts[i];
+        }
+        return start;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return nodeIds.length;
+    }
+
+    public String nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * 节点 id 对应的下标，不存在返回 -1
+     */
+    public int indexOf(String nodeId) {
+        Integer idx = nodeId == null ? null : indexOf.get(nodeId);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * 关系类型（不区分大小写）对应的整数 id；type 为 null 返回 -1 表示不过滤，类型不存在返回 -2（不匹配任何边）
+     */
+    public int typeId(String type) {
+        if (type == null) return -1;
+        Integer id = typeIds.get(GraphIndex.key(type));
+        return id == null ? -2 : id;
+    }
+
+    // ---- 遍历与分析 ----
+
+    public record Visit(String nodeId, int depth) {
+    }
+
+    /**
+     * 从 start 出发、深度不超过 maxDepth 的邻域，depth 为最短跳数。
+     * 深度总是由 BFS 求出；bfs=false 时只改变返回顺序：沿最短路径边（depth 恰好加 1）做深度优先，
+     * 结果集合与深度和 BFS 相同，不受边的存储顺序影响
+     */
+    public List<Visit> neighborhood(int start, int maxDepth, Direction direction, int type, boolean bfs) {
+        int n = size();
+        int[] depth = new int[n];
+        Arrays.fill(depth, -1);
+        List<Visit> visits = new ArrayList<>();
+        int[] queue = new int[n];
+        int head = 0;
+        int[] tail = {0};
+        queue[tail[0]++] = start;
+        depth[start] = 0;
+        while (head < tail[0]) {
+            int u = queue[head++];
+            visits.add(new Visit(nodeIds[u], depth[u]));
+            if (depth[u] >= maxDepth) continue;
+            forEachNeighbor(u, direction, type, v -> {
+                if (depth[v] < 0) {
+                    depth[v] = depth[u] + 1;
+                    queue[tail[0]++] = v;
+                }
+            });
+        }
+        if (bfs) return visits;
+
+        // 入栈即标记，每个节点只入栈一次；深度为 k 的节点总能从某个深度 k-1 的节点到达，因此不会遗漏
+        List<Visit> ordered = new ArrayList<>(visits.size());
+        boolean[] pushed = new boolean[n];
+        int[] stack = queue;
+        int[] top = {0};
+        stack[top[0]++] = start;
+        pushed[start] = true;
+        while (top[0] > 0) {
+            int u = stack[--top[0]];
+            ordered.add(new Visit(nodeIds[u], depth[u]));
+            if (depth[u] >= maxDepth) continue;
+            forEachNeighbor(u, direction, type, v -> {
+                if (!pushed[v] && depth[v] == depth[u] + 1) {
+                    pushed[v] = true;
+                    stack[top[0]++] = v;
+                }
+            });
+        }
+        return ordered;
+    }
+
+    private void forEachNeighbor(int u, Direction direction, int type, IntConsumer action) {
+        if (direction != Direction.IN) {
+            for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                if (type == -1 || outType[e] == type) action.accept(outTarget[e]);
+            }
+        }
+        if (direction != Direction.OUT) {
+            for (int e = inStart[u]; e < inStart[u + 1]; e++) {
+                if (type == -1 || inType[e] == type) action.accept(inSource[e]);
+            }
+        }
+    }
+
+    public record Path(List<String> nodeIds, double cost) {
+    }
+
+    /**
+     * Dijkstra 最短路径，边代价为关系的 weight（未设置按 1.0）；不可达返回 null
+     */
+    public Path shortestPath(int source, int target, int type) {
+        int n = size();
+        double[] dist = new double[n];
+        int[] prev = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        boolean[] done = new boolean[n];
+        IntMinHeap heap = new IntMinHeap(n, dist);
+        dist[source] = 0.0;
+        heap.push(source);
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            if (done[u]) continue;
+            done[u] = true;
+            if (u == target) break;
+            for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                if (type != -1 && outType[e] != type) continue;
+                int v = outTarget[e];
+                double candidate = dist[u] + outWeight[e];
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    prev[v] = u;
+                    heap.push(v);
+                }
+            }
+        }
+        if (Double.isInfinite(dist[target])) return null;
+        LinkedList<String> path = new LinkedList<>();
+        for (int v = target; v != -1; v = prev[v]) {
+            path.addFirst(nodeIds[v]);
+        }
+        return new Path(path, dist[target]);
+    }
+
+    public record TopologicalOrder(boolean acyclic, List<String> order, List<String> cycle) {
+    }
+
+    /**
+     * 只考虑指定类型的有向关系（from 先于 to）的拓扑序（Kahn 算法，同层按节点创建顺序）；
+     * 存在环时 acyclic=false，order 为能排出的前缀，cycle 为找到的一个环
+     */
+    public TopologicalOrder topologicalOrder(int type) {
+        int n = size();
+        int[] indegree = new int[n];
+        for (int u = 0; u < n; u++) {
+            for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                if (outDirected[e] && (type == -1 || outType[e] == type)) indegree[outTarget[e]]++;
+            }
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int u = 0; u < n; u++) {
+            if (indegree[u] == 0) ready.add(u);
+        }
+        List<String> order = new ArrayList<>(n);
+        while (!ready.isEmpty()) {
+            int u = ready.poll();
+            order.add(nodeIds[u]);
+            for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                if (!outDirected[e] || (type != -1 && outType[e] != type)) continue;
+                if (--indegree[outTarget[e]] == 0) ready.add(outTarget[e]);
+            }
+        }
+        if (order.size() == n) {
+            return new TopologicalOrder(true, order, List.of());
+        }
+        return new TopologicalOrder(false, order, findCycle(indegree, type));
+    }
+
+    /**
+     * Kahn 之后剩余节点的入度都来自剩余节点，沿入边反向走必然回到走过的节点，得到一个环
+     */
+    private List<String> findCycle(int[] remainingIndegree, int type) {
+        int n = size();
+        int start = -1;
+        for (int u = 0; u < n; u++) {
+            if (remainingIndegree[u] > 0) {
+                start = u;
+                break;
+            }
+        }
+        if (start < 0) return List.of();
+        int[] seenAt = new int[n];
+        Arrays.fill(seenAt, -1);
+        List<Integer> walk = new ArrayList<>();
+        int u = start;
+        while (seenAt[u] < 0) {
+            seenAt[u] = walk.size();
+            walk.add(u);
+            int next = -1;
+            for (int e = inStart[u]; e < inStart[u + 1]; e++) {
+                if (!inDirected[e] || (type != -1 && inType[e] != type)) continue;
+                if (remainingIndegree[inSource[e]] > 0) {
+                    next = inSource[e];
+                    break;
+                }
+            }
+            if (next < 0) return List.of();
+            u = next;
+        }
+        // 反向行走得到的是逆序环，翻转为 from→to 顺序
+        List<String> cycle = new ArrayList<>();
+        for (int i = walk.size() - 1; i >= seenAt[u]; i--) {
+            cycle.add(nodeIds[walk.get(i)]);
+        }
+        return cycle;
+    }
+
+    /**
+     * 弱连通分量（忽略方向），按分量大小降序
+     */
+    public List<List<String>> components() {
+        int n = size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        for (int u = 0; u < n; u++) {
+            for (int e = outStart[u]; e < outStart[u + 1]; e++) {
+                union(parent, u, outTarget[e]);
+            }
+        }
+        Map<Integer, List<String>> groups = new LinkedHashMap<>();
+        for (int u = 0; u < n; u++) {
+            groups.computeIfAbsent(find(parent, u), k -> new ArrayList<>()).add(nodeIds[u]);
+        }
+        List<List<String>> result = new ArrayList<>(groups.values());
+        result.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        return result;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) parent[Math.max(ra, rb)] = Math.min(ra, rb);
+    }
+
+    /**
+     * 以 dist[] 为键的 int 二叉堆（允许重复入堆，出堆时跳过已完成节点）
+     */
+    private static final class IntMinHeap {
+        private int[] heap;
+        private int size;
+        private final double[] key;
+
+        IntMinHeap(int capacity, double[] key) {
+            this.heap = new int[Math.max(capacity, 1)];
+            this.key = key;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int v) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            int i = size++;
+            heap[i] = v;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (key[heap[p]] <= key[heap[i]]) break;
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        int pop() {
+            int top = heap[0];
+            heap[0] = heap[--size];
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1;
+                int r = l + 1;
+                int m = i;
+                if (l < size && key[heap[l]] < key[heap[m]]) m = l;
+                if (r < size && key[heap[r]] < key[heap[m]]) m = r;
+                if (m == i) break;
+                swap(i, m);
+                i = m;
+            }
+            return top;
+        }
+
+        private void swap(int a, int b) {
+            int t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.backend.graph;
+
+import com.backend.entity.Graph;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单门课程知识图谱的内存索引：id→节点、小写 label→id，以及按节点、按关系类型分组的出边/入边表。
+ * 读写各自加读写锁；写入需在数据库写成功后调用，保持与 graph_node / graph_relation 一致。
+ * 按起点/终点/类型查询为 O(1) 定位 + O(度)，度数查询为 O(1)
+ */
+public final class GraphIndex {
+    private final Map<String, Graph.Node> nodes = new LinkedHashMap<>();
+    private final Map<String, String> labelToId = new HashMap<>();
+    private final Map<String, Graph.Relation> relations = new LinkedHashMap<>();
+    private final Map<String, List<Graph.Relation>> out = new HashMap<>();
+    private final Map<String, List<Graph.Relation>> in = new HashMap<>();
+    private final Map<String, Map<String, List<Graph.Relation>>> outByType = new HashMap<>();
+    private final Map<String, Map<String, List<Graph.Relation>>> inByType = new HashMap<>();
+    private final Map<String, List<Graph.Relation>> byType = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long version;
+    private volatile CompactGraph compact;
+
+    public GraphIndex(Collection<Graph.Node> nodes, Collection<Graph.Relation> relations) {
+        nodes.forEach(this::doPutNode);
+        relations.forEach(this::doPutRelation);
+    }
+
+    static String key(String s) {
+        return s == null ? null : s.toLowerCase(Locale.ROOT);
+    }
+
+    // ---- 读 ----
+
+    /**
+     * 每次写入递增，供派生结构（如遍历用的紧凑邻接数组）判断是否需要重建
+     */
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前版本的紧凑邻接数组快照（供遍历/分析使用）；版本变化后首次调用时重建
+     */
+    public CompactGraph compact() {
+        CompactGraph cached = compact;
+        Snapshot snapshot;
+        lock.readLock().lock();
+        try {
+            if (cached != null && cached.version() == version) return cached;
+            snapshot = snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+        cached = new CompactGraph(snapshot.version(), snapshot.nodes(), snapshot.relations());
+        compact = cached;
+        return cached;
+    }
+
+    /**
+     * 同一版本下一致的节点与关系列表（关系引用的节点一定在列表中）
+     */
+    public record Snapshot(long version, List<Graph.Node> nodes, List<Graph.Relation> relations) {
+    }
+
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new Snapshot(version, new ArrayList<>(nodes.values()), new ArrayList<>(relations.values()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Graph.Node> nodes() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodes.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Graph.Node> node(String nodeId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(nodes.get(nodeId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsNode(String nodeId) {
+        lock.readLock().lock();
+        try {
+            return nodes.containsKey(nodeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按 label（不区分大小写）查节点 id
+     */
+    public Optional<String> nodeIdByLabel(String label) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(labelToId.get(key(label)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Graph.Relation> relation(String relationId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(relations.get(relationId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Graph.Relation> relations() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(relations.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按起点/终点/类型过滤，参数为 null 表示不过滤；优先从最窄的邻接表开始扫描
+     */
+    public List<Graph.Relation> relations(String from, String to, String type) {
+        String typeKey = key(type);
+        lock.readLock().lock();
+        try {
+            List<Graph.Relation> candidates;
+            if (from != null) {
+                candidates = typeKey != null ? typed(outByType, from, typeKey) : out.getOrDefault(from, List.of());
+                if (to == null) return new ArrayList<>(candidates);
+                List<Graph.Relation> result = new ArrayList<>();
+                for (Graph.Relation r : candidates) {
+                    if (to.equals(r.getTo())) result.add(r);
+                }
+                return result;
+            }
+            if (to != null) {
+                candidates = typeKey != null ? typed(inByType, to, typeKey) : in.getOrDefault(to, List.of());
+                return new ArrayList<>(candidates);
+            }
+            if (typeKey != null) {
+                return new ArrayList<>(byType.getOrDefault(typeKey, List.of()));
+            }
+            return new ArrayList<>(relations.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasRelation(String from, String to, String type) {
+        lock.readLock().lock();
+        try {
+            for (Graph.Relation r : typed(outByType, from, key(type))) {
+                if (Objects.equals(to, r.getTo())) return true;
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int outDegree(String nodeId) {
+        lock.readLock().lock();
+        try {
+            return out.getOrDefault(nodeId, List.of()).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int inDegree(String nodeId) {
+        lock.readLock().lock();
+        try {
+            return in.getOrDefault(nodeId, List.of()).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReferenced(String nodeId) {
+        lock.readLock().lock();
+        try {
+            return !out.getOrDefault(nodeId, List.of()).isEmpty() || !in.getOrDefault(nodeId, List.of()).isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- 写（数据库写入成功后调用，均为幂等操作） ----
+
+    public void putNode(Graph.Node node) {
+        lock.writeLock().lock();
+        try {
+            doPutNode(node);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeNode(String nodeId) {
+        lock.writeLock().lock();
+        try {
+            Graph.Node removed = nodes.remove(nodeId);
+            if (removed != null) {
+                labelToId.remove(key(removed.getLabel()), nodeId);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putRelation(Graph.Relation relation) {
+        lock.writeLock().lock();
+        try {
+            doPutRelation(relation);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeRelation(String relationId) {
+        lock.writeLock().lock();
+        try {
+            doRemoveRelation(relationId);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量修改一次性应用（单次加锁、版本只递增一次），顺序与 GraphBatchPlan 一致
+     */
+    public void apply(Collection<String> removedRelationIds, Collection<String> removedNodeIds,
+                      Collection<Graph.Node> putNodes, Collection<Graph.Relation> putRelations) {
+        lock.writeLock().lock();
+        try {
+            removedRelationIds.forEach(this::doRemoveRelation);
+            for (String nodeId : removedNodeIds) {
+                Graph.Node removed = nodes.remove(nodeId);
+                if (removed != null) labelToId.remove(key(removed.getLabel()), nodeId);
+            }
+            putNodes.forEach(this::doPutNode);
+            putRelations.forEach(this::doPutRelation);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void doPutNode(Graph.Node node) {
+        Graph.Node previous = nodes.put(node.getId(), node);
+        if (previous != null) {
+            labelToId.remove(key(previous.getLabel()), node.getId());
+        }
+        if (node.getLabel() != null) {
+            labelToId.put(key(node.getLabel()), node.getId());
+        }
+    }
+
+    private void doPutRelation(Graph.Relation relation) {
+        // 替换时保留在 relations 中的原有顺序，只重挂邻接表
+        Graph.Relation previous = relations.put(relation.getId(), relation);
+        if (previous != null) detachAll(previous);
+        String typeKey = key(relation.getType());
+        out.computeIfAbsent(relation.getFrom(), k -> new ArrayList<>()).add(relation);
+        in.computeIfAbsent(relation.getTo(), k -> new ArrayList<>()).add(relation);
+        outByType.computeIfAbsent(relation.getFrom(), k -> new HashMap<>())
+                .computeIfAbsent(typeKey, k -> new ArrayList<>()).add(relation);
+        inByType.computeIfAbsent(relation.getTo(), k -> new HashMap<>())
+                .computeIfAbsent(typeKey, k -> new ArrayList<>()).add(relation);
+        byType.computeIfAbsent(typeKey, k -> new ArrayList<>()).add(relation);
+    }
+
+    private void doRemoveRelation(String relationId) {
+        Graph.Relation previous = relations.remove(relationId);
+        if (previous != null) detachAll(previous);
+    }
+
+    private void detachAll(Graph.Relation previous) {
+        String typeKey = key(previous.getType());
+        detach(out, previous.getFrom(), previous);
+        detach(in, previous.getTo(), previous);
+        Map<String, List<Graph.Relation>> outTyped = outByType.get(previous.getFrom());
+        if (outTyped != null) {
+            detach(outTyped, typeKey, previous);
+            if (outTyped.isEmpty()) outByType.remove(previous.getFrom());
+        }
+        Map<String, List<Graph.Relation>> inTyped = inByType.get(previous.getTo());
+        if (inTyped != null) {
+            detach(inTyped, typeKey, previous);
+            if (inTyped.isEmpty()) inByType.remove(previous.getTo());
+        }
+        detach(byType, typeKey, previous);
+    }
+
+    private static void detach(Map<String, List<Graph.Relation>> adjacency, String key, Graph.Relation relation) {
+        List<Graph.Relation> list = adjacency.get(key);
+        if (list == null) return;
+        list.removeIf(r -> r == relation);
+        if (list.isEmpty()) adjacency.remove(key);
+    }
+
+    private static List<Graph.Relation> typed(Map<String, Map<String, List<Graph.Relation>>> adjacency,
+                                              String nodeId, String typeKey) {
+        Map<String, List<Graph.Relation>> byNode = adjacency.get(nodeId);
+        if (byNode == null) return List.of();
+        return byNode.getOrDefault(typeKey, List.of());
+    }
+}
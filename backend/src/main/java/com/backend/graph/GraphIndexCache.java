@@ -0,0 +1,95 @@
+package com.backend.graph;
+
+import com.backend.entity.GraphNode;
+import com.backend.entity.GraphRelation;
+import com.backend.repository.GraphNodeRepository;
+import com.backend.repository.GraphRelationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 按课程缓存 GraphIndex：首次读取时从 graph_node / graph_relation 加载，
+ * 之后由 GraphService 在每次写库成功后增量更新。
+ * 最多缓存 maxCourses 门课程，超出时按最近访问时间淘汰最久未读的课程；
+ * 只淘汰能立即取得课程写锁的课程，不会在写入与其增量更新之间移除索引
+ */
+@Component
+public class GraphIndexCache {
+    private final GraphNodeRepository graphNodeRepository;
+    private final GraphRelationRepository graphRelationRepository;
+    private final GraphWriteLocks graphWriteLocks;
+    private final int maxCourses;
+
+    private final Map<Long, Entry> indexes = new ConcurrentHashMap<>();
+
+    public GraphIndexCache(GraphNodeRepository graphNodeRepository, GraphRelationRepository graphRelationRepository,
+                           GraphWriteLocks graphWriteLocks,
+                           @Value("${app.graph.index-cache-size:256}") int maxCourses) {
+        this.graphNodeRepository = graphNodeRepository;
+        this.graphRelationRepository = graphRelationRepository;
+        this.graphWriteLocks = graphWriteLocks;
+        this.maxCourses = Math.max(1, maxCourses);
+    }
+
+    private static final class Entry {
+        final GraphIndex index;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(GraphIndex index) {
+            this.index = index;
+        }
+    }
+
+    public GraphIndex get(Long courseId) {
+        Entry entry = indexes.get(courseId);
+        if (entry == null) {
+            entry = indexes.computeIfAbsent(courseId, id -> new Entry(load(id)));
+            evictOverflow(courseId);
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.index;
+    }
+
+    /**
+     * 仅当该课程索引已加载时应用增量更新；未加载的课程下次读取时会从数据库完整加载
+     */
+    public void update(Long courseId, Consumer<GraphIndex> change) {
+        indexes.computeIfPresent(courseId, (id, entry) -> {
+            change.accept(entry.index);
+            return entry;
+        });
+    }
+
+    public void evict(Long courseId) {
+        indexes.remove(courseId);
+    }
+
+    /**
+     * 超出上限时从最久未访问的课程开始淘汰（不含刚加载的 keep）；写锁被占用的课程跳过，留到下次加载时再淘汰。
+     * 只在缓存未命中后执行，命中路径不扫描
+     */
+    private void evictOverflow(Long keep) {
+        if (indexes.size() <= maxCourses) return;
+        List<Map.Entry<Long, Entry>> candidates = new ArrayList<>(indexes.entrySet());
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<Long, Entry> candidate : candidates) {
+            if (indexes.size() <= maxCourses) return;
+            Long courseId = candidate.getKey();
+            if (courseId.equals(keep)) continue;
+            graphWriteLocks.tryWrite(courseId, () -> indexes.remove(courseId, candidate.getValue()));
+        }
+    }
+
+    private GraphIndex load(Long courseId) {
+        return new GraphIndex(
+                graphNodeRepository.findByCourseIdOrderByIdAsc(courseId).stream().map(GraphNode::toNode).toList(),
+                graphRelationRepository.findByCourseIdOrderByIdAsc(courseId).stream().map(GraphRelation::toRelation).toList());
+    }
+}
@@ -0,0 +1,109 @@
+package com.backend.graph;
+
+import com.backend.repository.GraphRepository;
+import com.backend.util.IdAllocator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 知识图谱写操作的并发控制：每门课程一把独立的锁（不同课程之间互不争用），
+ * 以及课程内节点/关系 id 的分配。id 数字由 IdAllocator 按课程分序列按块预留，
+ * 序列首次使用时从数据库现有最大后缀初始化；保存失败留下的空号不会复用
+ */
+@Component
+@RequiredArgsConstructor
+public class GraphWriteLocks {
+    private final GraphRepository graphRepository;
+    private final IdAllocator idAllocator;
+
+    private final Map<Long, CourseSlot> slots = new ConcurrentHashMap<>();
+
+    private static final class CourseSlot {
+        final ReentrantLock lock = new ReentrantLock();
+    }
+
+    private static String nodeSequence(Long courseId) {
+        return "graph-node:" + courseId;
+    }
+
+    private static String relationSequence(Long courseId) {
+        return "graph-relation:" + courseId;
+    }
+
+    private CourseSlot slot(Long courseId) {
+        return slots.computeIfAbsent(courseId, id -> new CourseSlot());
+    }
+
+    /**
+     * 在该课程的写锁内执行；同一课程的写操作串行，读操作不受影响
+     */
+    public <T> T write(Long courseId, Supplier<T> action) {
+        ReentrantLock lock = slot(courseId).lock;
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void write(Long courseId, Runnable action) {
+        write(courseId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 写锁空闲（或已被当前线程持有）时在锁内执行并返回 true；被其他线程占用时不等待，返回 false
+     */
+    public boolean tryWrite(Long courseId, Runnable action) {
+        ReentrantLock lock = slot(courseId).lock;
+        if (!lock.tryLock()) return false;
+        try {
+            action.run();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 分配下一个节点 id（n1, n2, ...），须在 write() 内调用
+     */
+    public String nextNodeId(Long courseId) {
+        heldSlot(courseId);
+        return "n" + idAllocator.next(nodeSequence(courseId), () -> graphRepository.maxNodeIdSuffix(courseId));
+    }
+
+    /**
+     * 分配下一个关系 id（r1, r2, ...），须在 write() 内调用
+     */
+    public String nextRelationId(Long courseId) {
+        heldSlot(courseId);
+        return "r" + idAllocator.next(relationSequence(courseId), () -> graphRepository.maxRelationIdSuffix(courseId));
+    }
+
+    /**
+     * 出现 id 冲突后（如数据被整体替换或由其他途径写入）将课程的序列推进到数据库现有最大后缀之后
+     */
+    public void resetSequences(Long courseId) {
+        write(courseId, () -> {
+            idAllocator.advanceTo(nodeSequence(courseId), graphRepository.maxNodeIdSuffix(courseId));
+            idAllocator.advanceTo(relationSequence(courseId), graphRepository.maxRelationIdSuffix(courseId));
+        });
+    }
+
+    private CourseSlot heldSlot(Long courseId) {
+        CourseSlot slot = slot(courseId);
+        if (!slot.lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Graph id allocation requires the course write lock");
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,238 @@
+package com.backend.quiz;
+
+import com.backend.entity.Question;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.*;
+
+/**
+ * 单个测验编译后的只读答案表：题目按原顺序映射为 0..n-1 下标，每题正确答案存为位掩码，
+ * 每题分值、题目实体 id 预先算好。判分时每个作答只做一次位运算比较，不再反序列化题目或创建集合。
+ * 选项下标超出 0..62 的题目不参与自动判分（与未知题型相同，计 0 分）
+ */
+public final class AnswerKey {
+    public static final int MAX_SCORE = 100;
+
+    private static final Set<String> AUTO_GRADED = Set.of("single", "multiple", "truefalse");
+
+    private final Long courseId;
+    private final String[] questionIds;
+    private final Map<String, Integer> indexOf;
+    private final long[] correctMask;
+    private final boolean[] gradable;
+    private final int[] scores;
+    private final Long[] entityIds;
+    private final int[] optionCounts;
+    private final boolean[] shuffleOptions;
+    /** 每套抽取的题数（未设置题库抽题时为全部题目） */
+    private final int drawCount;
+    private final boolean shuffle;
+    /** 限时测验只能经限时考试会话作答 */
+    private final boolean timed;
+    /** 编译时的题目内容版本（Quiz.questionsVersion），随作答记录保存 */
+    private final int questionsVersion;
+
+    /**
+     * 提交的单条作答（由请求 DTO 实现）
+     */
+    public interface Response {
+        String getQuestionId();
+
+        List<Integer> getAnswer();
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record QuestionResult(String questionId, Long questionEntityId, boolean correct, int score) {
+    }
+
+    public record Grade(int score, int total, List<QuestionResult> results, AttemptOutcome outcome) {
+    }
+
+    /**
+     * @param questions 测验的题目行，按 orderIndex 排序
+     * @param drawCount 每个学生从题库中抽取的题数，为空表示全部
+     * @param shuffle   是否为每个学生打乱题目与选项顺序
+     * @param timed     是否为限时测验
+     * @param questionsVersion 题目内容版本
+     */
+    public AnswerKey(Long courseId, List<Question> questions, Integer drawCount, boolean shuffle, boolean timed,
+                     int questionsVersion) {
+        this.courseId = courseId;
+        int n = questions.size();
+        this.questionIds = new String[n];
+        this.indexOf = new HashMap<>(n * 2);
+        this.correctMask = new long[n];
+        this.gradable = new boolean[n];
+        this.scores = new int[n];
+        this.entityIds = new Long[n];
+        this.optionCounts = new int[n];
+        this.shuffleOptions = new boolean[n];
+        this.drawCount = drawCount == null ? n : Math.min(drawCount, n);
+        this.shuffle = shuffle;
+        this.timed = timed;
+        this.questionsVersion = questionsVersion;
+
+        // 总分固定为 100：每题基础分相同，前 remainder 道题多 1 分
+        int base = n == 0 ? 0 : MAX_SCORE / n;
+        int remainder = n == 0 ? 0 : MAX_SCORE % n;
+        for (int i = 0; i < n; i++) {
+            Question q = questions.get(i);
+            questionIds[i] = q.getOriginalId();
+            if (q.getOriginalId() != null) indexOf.putIfAbsent(q.getOriginalId(), i);
+            entityIds[i] = q.getId();
+            scores[i] = base + (i < remainder ? 1 : 0);
+            long mask = mask(q.getAnswer() == null ? List.of() : q.getAnswer());
+            gradable[i] = q.getType() != null && AUTO_GRADED.contains(q.getType().toLowerCase(Locale.ROOT)) && mask >= 0;
+            correctMask[i] = mask;
+            optionCounts[i] = q.getOptions() == null ? 0 : q.getOptions().size();
+            shuffleOptions[i] = !"truefalse".equalsIgnoreCase(q.getType());
+        }
+    }
+
+    /**
+     * 选项下标集合 → 位掩码；含 null 或超出 0..62 的下标时返回 -1（无法用单个 long 表示，视为不匹配）
+     */
+    private static long mask(List<Integer> indexes) {
+        long mask = 0L;
+        for (Integer i : indexes) {
+            if (i == null || i < 0 || i > 62) return -1L;
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    public Long courseId() {
+        return courseId;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public int questionsVersion() {
+        return questionsVersion;
+    }
+
+    public int indexOf(String questionId) {
+        Integer idx = questionId == null ? null : indexOf.get(questionId);
+        return idx == null ? -1 : idx;
+    }
+
+    public String questionId(int index) {
+        return questionIds[index];
+    }
+
+    public Long entityId(int index) {
+        return entityIds[index];
+    }
+
+    public int score(int index) {
+        return scores[index];
+    }
+
+    public boolean isCorrect(int index, List<Integer> provided) {
+        return gradable[index] && mask(provided == null ? List.of() : provided) == correctMask[index];
+    }
+
+    /**
+     * 是否为每个学生生成不同的版本（抽题或打乱顺序）
+     */
+    public boolean isRandomized() {
+        return shuffle || drawCount < questionIds.length;
+    }
+
+    /**
+     * 派生某学生某次作答的版本；出题与判分各自调用，结果相同
+     */
+    public QuizVariant variant(Long userId, String quizId, int attempt) {
+        return QuizVariant.derive(QuizVariant.seed(userId, quizId, attempt), optionCounts, shuffleOptions,
+                drawCount, shuffle);
+    }
+
+    private record CanonicalAnswer(String questionId, List<Integer> answer) implements Response {
+        @Override
+        public String getQuestionId() {
+            return questionId;
+        }
+
+        @Override
+        public List<Integer> getAnswer() {
+            return answer;
+        }
+    }
+
+    /**
+     * 把按版本中展示位置提交的选项下标换算回测验中的原选项下标；题目 id 不随版本变化
+     */
+    public List<Response> toCanonical(List<? extends Response> answers, QuizVariant variant) {
+        List<Response> canonical = new ArrayList<>(answers.size());
+        for (Response a : answers) {
+            int idx = indexOf(a.getQuestionId());
+            if (idx < 0 || a.getAnswer() == null) {
+                canonical.add(new CanonicalAnswer(a.getQuestionId(), a.getAnswer()));
+                continue;
+            }
+            List<Integer> mapped = new ArrayList<>(a.getAnswer().size());
+            for (Integer position : a.getAnswer()) {
+                mapped.add(position == null ? null : variant.canonicalOption(idx, position));
+            }
+            canonical.add(new CanonicalAnswer(a.getQuestionId(), mapped));
+        }
+        return canonical;
+    }
+
+    public Grade grade(List<? extends Response> answers) {
+        return grade(answers, null);
+    }
+
+    /**
+     * 单遍判分：按提交顺序输出作答结果，同一题只按第一次作答计分（重复作答忽略），
+     * 提交中不存在的题目计 0 分；随后按测验顺序补上未作答的题目。
+     * 给出 variant 时（答案须已换算为原选项下标）只有抽中的题目计分，分值按本套重新分配，
+     * 未抽中的题目按不存在处理，补上的未作答题目按本套顺序。
+     * 同时按题目顺序产出紧凑的逐题结果（AttemptOutcome），供作答历史与统计使用
+     */
+    public Grade grade(List<? extends Response> answers, QuizVariant variant) {
+        int n = questionIds.length;
+        boolean[] answered = new boolean[n];
+        boolean[] correctFlags = new boolean[n];
+        boolean[] presented = null;
+        long[] chosen = new long[n];
+        List<QuestionResult> results = new ArrayList<>(Math.max(n, answers.size()));
+        int total = 0;
+        for (Response a : answers) {
+            int idx = indexOf(a.getQuestionId());
+            if (idx < 0 || (variant != null && !variant.isDrawn(idx))) {
+                results.add(new QuestionResult(a.getQuestionId(), null, false, 0));
+                continue;
+            }
+            if (answered[idx]) continue;
+            answered[idx] = true;
+            long provided = mask(a.getAnswer() == null ? List.of() : a.getAnswer());
+            boolean correct = gradable[idx] && provided == correctMask[idx];
+            chosen[idx] = Math.max(provided, 0L);
+            correctFlags[idx] = correct;
+            int score = correct ? (variant == null ? scores[idx] : variant.score(idx)) : 0;
+            total += score;
+            results.add(new QuestionResult(questionIds[idx], entityIds[idx], correct, score));
+        }
+        if (variant == null) {
+            for (int i = 0; i < n; i++) {
+                if (!answered[i]) results.add(new QuestionResult(questionIds[i], entityIds[i], false, 0));
+            }
+        } else {
+            presented = new boolean[n];
+            for (int p = 0; p < variant.size(); p++) {
+                int i = variant.questionAt(p);
+                presented[i] = true;
+                if (!answered[i]) results.add(new QuestionResult(questionIds[i], entityIds[i], false, 0));
+            }
+        }
+        return new Grade(Math.min(total, MAX_SCORE), MAX_SCORE, results,
+                AttemptOutcome.of(correctFlags, answered, chosen, presented));
+    }
+}
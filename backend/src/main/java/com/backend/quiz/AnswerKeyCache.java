@@ -0,0 +1,32 @@
+package com.backend.quiz;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 按测验 id 缓存编译后的 AnswerKey。测验更新/删除后由 QuizService 调用 evict；
+ * 编译期间若发生过 evict，编译结果只用于本次请求而不写入缓存，避免旧答案表被缓存下来
+ */
+@Component
+public class AnswerKeyCache {
+    private final Map<String, AnswerKey> keys = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AnswerKey get(String quizId, Supplier<AnswerKey> compiler) {
+        AnswerKey key = keys.get(quizId);
+        if (key != null) return key;
+        long before = evictions.get();
+        key = compiler.get();
+        if (evictions.get() == before) keys.putIfAbsent(quizId, key);
+        return key;
+    }
+
+    public void evict(String quizId) {
+        evictions.incrementAndGet();
+        keys.remove(quizId);
+    }
+}
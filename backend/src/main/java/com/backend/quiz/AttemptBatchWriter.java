@@ -0,0 +1,294 @@
+package com.backend.quiz;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 将一批答卷事件以 JDBC batch 写库：作答历史逐条追加到 quiz_attempt；
+ * 进度与错题先合并：同一 (用户, 课程, 测验) 只保留最高分，
+ * 同一 (用户, 题目) 的错题只保留最后一次答案并累加练习次数。
+ * 写入语义与 ProgressService.saveQuizProgress / WrongQuestionService.addWrongQuestion 一致；
+ * 进度变化同时累加到 progress_rollup
+ */
+@Component
+@RequiredArgsConstructor
+public class AttemptBatchWriter {
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final QuestionAnalytics questionAnalytics;
+    private final WrongQuestionCounters wrongQuestionCounters;
+
+    private record ProgressKey(Long userId, Long courseId, String quizId) {
+    }
+
+    private record WrongKey(Long userId, Long questionId) {
+    }
+
+    private record RollupKey(Long userId, Long courseId) {
+    }
+
+    private record Previous(Integer score, boolean completed) {
+    }
+
+    private static final class WrongUpsert {
+        final Long courseId;
+        final String quizId;
+        List<Integer> answer;
+        int occurrences;
+        LocalDateTime at;
+
+        WrongUpsert(Long courseId, String quizId) {
+            this.courseId = courseId;
+            this.quizId = quizId;
+        }
+    }
+
+    /**
+     * 在单个事务内写入整批；唯一约束冲突（其他线程刚插入同一行）时整批重试一次，此时会走更新分支
+     */
+    public void write(List<AttemptEvent> events) {
+        if (events.isEmpty()) return;
+        Map<ProgressKey, AttemptEvent> best = new LinkedHashMap<>();
+        Map<WrongKey, WrongUpsert> wrong = new LinkedHashMap<>();
+        for (AttemptEvent e : events) {
+            // 同分时保留先到的一条，与逐条“只在更高分时更新”一致
+            best.merge(new ProgressKey(e.userId(), e.courseId(), e.quizId()), e, (a, b) -> b.score() > a.score() ? b : a);
+            for (AttemptEvent.WrongAnswer w : e.wrongAnswers()) {
+                WrongUpsert u = wrong.computeIfAbsent(new WrongKey(e.userId(), w.questionEntityId()),
+                        k -> new WrongUpsert(e.courseId(), e.quizId()));
+                u.answer = w.answer();
+                u.occurrences++;
+                u.at = e.submittedAt();
+            }
+        }
+
+        // 提交成功后累加逐题统计，并让涉及的错题统计下次重新加载
+        questionAnalytics.recordAfter(() -> persist(() -> {
+            appendAttempts(events);
+            upsertProgress(best.values());
+            upsertWrongQuestions(wrong);
+        }, wrong), events);
+    }
+
+    /**
+     * 直接写入某用户在某课程的一批错题（批量添加接口），语义与答卷事件中的错题相同；
+     * 同一题目出现多次时保留最后一次答案并累加练习次数
+     *
+     * @param quizIds 题目实体 id → 所属测验 id，须包含 answers 中的所有题目
+     */
+    public void writeWrongAnswers(Long userId, Long courseId, Map<Long, String> quizIds,
+                                  List<AttemptEvent.WrongAnswer> answers, LocalDateTime at) {
+        if (answers.isEmpty()) return;
+        Map<WrongKey, WrongUpsert> wrong = new LinkedHashMap<>();
+        for (AttemptEvent.WrongAnswer w : answers) {
+            WrongUpsert u = wrong.computeIfAbsent(new WrongKey(userId, w.questionEntityId()),
+                    k -> new WrongUpsert(courseId, quizIds.get(w.questionEntityId())));
+            u.answer = w.answer();
+            u.occurrences++;
+            u.at = at;
+        }
+        persist(() -> upsertWrongQuestions(wrong), wrong);
+    }
+
+    /**
+     * 在单个事务内执行写入，唯一约束冲突时重试一次；提交后让涉及的错题统计失效
+     */
+    private void persist(Runnable writes, Map<WrongKey, WrongUpsert> wrong) {
+        Set<Long> userIds = new HashSet<>();
+        wrong.keySet().forEach(key -> userIds.add(key.userId()));
+        wrongQuestionCounters.write(userIds, () -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writes.run());
+            } catch (DataIntegrityViolationException e) {
+                transactionTemplate.executeWithoutResult(status -> writes.run());
+            }
+            wrong.forEach((key, u) -> wrongQuestionCounters.evict(key.userId(), u.courseId));
+            return null;
+        });
+    }
+
+    private void appendAttempts(List<AttemptEvent> events) {
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (AttemptEvent e : events) {
+            AttemptOutcome o = e.outcome();
+            rows.add(new Object[]{e.userId(), e.courseId(), e.quizId(), e.questionsVersion(), e.score(), e.total(),
+                    o.questionCount(), o.correct(), o.answered(), o.chosen(), o.presented(),
+                    Timestamp.valueOf(e.submittedAt())});
+        }
+        jdbc.getJdbcTemplate().batchUpdate(
+                "INSERT INTO quiz_attempt (user_id, course_id, quiz_id, questions_version, score, total, question_count, "
+                        + "correct_bits, answered_bits, chosen_masks, presented_bits, submitted_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private void upsertProgress(Collection<AttemptEvent> events) {
+        Set<Long> userIds = new HashSet<>();
+        Set<String> quizIds = new HashSet<>();
+        for (AttemptEvent e : events) {
+            userIds.add(e.userId());
+            quizIds.add(e.quizId());
+        }
+        // 锁定已有行并取出旧分数，据此计算进度汇总的增量
+        Map<ProgressKey, Previous> existing = new HashMap<>();
+        jdbc.query("SELECT user_id, course_id, quiz_id, score, completed FROM progress "
+                        + "WHERE user_id IN (:userIds) AND quiz_id IN (:quizIds) FOR UPDATE",
+                new MapSqlParameterSource("userIds", userIds).addValue("quizIds", quizIds),
+                rs -> {
+                    int score = rs.getInt(4);
+                    existing.put(new ProgressKey(rs.getLong(1), rs.getLong(2), rs.getString(3)),
+                            new Previous(rs.wasNull() ? null : score, rs.getBoolean(5)));
+                });
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Map<RollupKey, long[]> rollups = new LinkedHashMap<>();
+        for (AttemptEvent e : events) {
+            Timestamp at = Timestamp.valueOf(e.submittedAt());
+            Previous previous = existing.get(new ProgressKey(e.userId(), e.courseId(), e.quizId()));
+            long[] delta = rollups.computeIfAbsent(new RollupKey(e.userId(), e.courseId()), k -> new long[3]);
+            if (previous != null) {
+                updates.add(new Object[]{e.score(), e.total(), at, at, e.userId(), e.courseId(), e.quizId(), e.score()});
+                if (previous.score() == null || previous.score() < e.score()) {
+                    boolean counted = previous.completed() && previous.score() != null;
+                    delta[0] += previous.completed() ? 0 : 1;
+                    delta[1] += e.score() - (counted ? previous.score() : 0);
+                    delta[2] += counted ? 0 : 1;
+                }
+            } else {
+                inserts.add(new Object[]{e.userId(), e.courseId(), e.quizId(), e.score(), e.total(), at, at});
+                delta[0]++;
+                delta[1] += e.score();
+                delta[2]++;
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO progress (user_id, course_id, quiz_id, score, total_score, completed, completed_at, last_accessed_at) "
+                            + "VALUES (?, ?, ?, ?, ?, TRUE, ?, ?)", inserts);
+        }
+        if (!updates.isEmpty()) {
+            // 只在更高分时更新
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "UPDATE progress SET score = ?, total_score = ?, completed = TRUE, completed_at = ?, last_accessed_at = ? "
+                            + "WHERE user_id = ? AND course_id = ? AND quiz_id = ? AND (score IS NULL OR score < ?)", updates);
+        }
+        upsertRollups(rollups);
+    }
+
+    /**
+     * 把 (已完成测验数, 分数和, 分数计数) 的增量加到 progress_rollup，缺少的汇总行直接按增量插入
+     */
+    private void upsertRollups(Map<RollupKey, long[]> rollups) {
+        rollups.values().removeIf(d -> d[0] == 0 && d[1] == 0 && d[2] == 0);
+        if (rollups.isEmpty()) return;
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> courseIds = new HashSet<>();
+        for (RollupKey k : rollups.keySet()) {
+            userIds.add(k.userId());
+            courseIds.add(k.courseId());
+        }
+        Set<RollupKey> existing = new HashSet<>();
+        jdbc.query("SELECT user_id, course_id FROM progress_rollup WHERE user_id IN (:userIds) AND course_id IN (:courseIds)",
+                new MapSqlParameterSource("userIds", userIds).addValue("courseIds", courseIds),
+                rs -> {
+                    existing.add(new RollupKey(rs.getLong(1), rs.getLong(2)));
+                });
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        rollups.forEach((k, d) -> {
+            if (existing.contains(k)) {
+                updates.add(new Object[]{d[0], d[1], d[2], k.userId(), k.courseId()});
+            } else {
+                inserts.add(new Object[]{k.userId(), k.courseId(), d[0], d[1], d[2]});
+            }
+        });
+        if (!inserts.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO progress_rollup (user_id, course_id, completed_quizzes, score_sum, score_count, note_count) "
+                            + "VALUES (?, ?, ?, ?, ?, 0)", inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "UPDATE progress_rollup SET completed_quizzes = completed_quizzes + ?, score_sum = score_sum + ?, "
+                            + "score_count = score_count + ? WHERE user_id = ? AND course_id = ?", updates);
+        }
+    }
+
+    private void upsertWrongQuestions(Map<WrongKey, WrongUpsert> wrong) {
+        if (wrong.isEmpty()) return;
+        Map<WrongKey, Long> existing = wrongQuestionIds(wrong.keySet());
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> clearAnswers = new ArrayList<>();
+        wrong.forEach((key, u) -> {
+            Timestamp at = Timestamp.valueOf(u.at);
+            Long id = existing.get(key);
+            if (id != null) {
+                // 重新答错时重置掌握状态并累加练习次数，复习调度按每次答错一次遗忘处理（立即到期）
+                updates.add(new Object[]{u.occurrences, at, SpacedRepetition.MIN_EASE,
+                        SpacedRepetition.lapseEaseDelta(u.occurrences), at, id});
+                clearAnswers.add(new Object[]{id});
+            } else {
+                // 首次答错加入错题本，同一批次中之后的每次答错各按一次遗忘处理
+                double ease = Math.max(SpacedRepetition.MIN_EASE,
+                        SpacedRepetition.INITIAL_EASE + SpacedRepetition.lapseEaseDelta(u.occurrences - 1));
+                inserts.add(new Object[]{key.userId(), u.courseId, key.questionId(), u.quizId, at, at, u.occurrences,
+                        ease, at});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "UPDATE wrong_question SET mastered = FALSE, practice_count = practice_count + ?, last_practiced_at = ?, "
+                            + "ease_factor = GREATEST(?, ease_factor + ?), interval_days = 0, repetitions = 0, due_at = ? WHERE id = ?",
+                    updates);
+            jdbc.getJdbcTemplate().batchUpdate("DELETE FROM wrong_question_user_answers WHERE wrong_question_id = ?", clearAnswers);
+        }
+        if (!inserts.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO wrong_question (user_id, course_id, question_id, quiz_id, mastered, added_at, last_practiced_at, practice_count, "
+                            + "ease_factor, interval_days, repetitions, due_at) VALUES (?, ?, ?, ?, FALSE, ?, ?, ?, ?, 0, 0, ?)", inserts);
+        }
+        Map<WrongKey, Long> ids = inserts.isEmpty() ? existing : wrongQuestionIds(wrong.keySet());
+
+        List<Object[]> answers = new ArrayList<>();
+        for (Map.Entry<WrongKey, WrongUpsert> entry : wrong.entrySet()) {
+            Long id = ids.get(entry.getKey());
+            List<Integer> answer = entry.getValue().answer;
+            if (id == null || answer == null) continue;
+            for (Integer index : answer) {
+                if (index != null) answers.add(new Object[]{id, index});
+            }
+        }
+        if (!answers.isEmpty()) {
+            jdbc.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO wrong_question_user_answers (wrong_question_id, answer_index) VALUES (?, ?)", answers);
+        }
+    }
+
+    private Map<WrongKey, Long> wrongQuestionIds(Set<WrongKey> keys) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> questionIds = new HashSet<>();
+        for (WrongKey k : keys) {
+            userIds.add(k.userId());
+            questionIds.add(k.questionId());
+        }
+        Map<WrongKey, Long> ids = new HashMap<>();
+        jdbc.query("SELECT id, user_id, question_id FROM wrong_question WHERE user_id IN (:userIds) AND question_id IN (:questionIds)",
+                new MapSqlParameterSource("userIds", userIds).addValue("questionIds", questionIds),
+                rs -> {
+                    WrongKey key = new WrongKey(rs.getLong(2), rs.getLong(3));
+                    if (keys.contains(key)) ids.put(key, rs.getLong(1));
+                });
+        return ids;
+    }
+}
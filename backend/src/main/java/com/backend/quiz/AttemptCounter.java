@@ -0,0 +1,47 @@
+package com.backend.quiz;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 (用户, 课程, 测验) 记录已完成的作答次数，抽题/乱序版本的 attempt 由服务端据此推导，不接受客户端指定。
+ * 首次访问时从 quiz_attempt 计数加载；之后每次判分在内存中推进，不依赖异步管道是否已写入
+ * （管道在停止时排空，重启后从数据库加载的计数是完整的）
+ */
+@Component
+public class AttemptCounter {
+    private final Map<Key, AtomicInteger> completed = new ConcurrentHashMap<>();
+
+    private record Key(Long userId, Long courseId, String quizId) {
+    }
+
+    /**
+     * 下一次作答的序号（已完成次数 + 1）
+     */
+    public int next(Long userId, Long courseId, String quizId, LongSupplier loader) {
+        return counter(userId, courseId, quizId, loader).get() + 1;
+    }
+
+    /**
+     * 第 attempt 次作答已判分；并发判分时只前进不后退
+     */
+    public void completed(Long userId, Long courseId, String quizId, int attempt, LongSupplier loader) {
+        counter(userId, courseId, quizId, loader).accumulateAndGet(attempt, Math::max);
+    }
+
+    /**
+     * 测验删除后丢弃其计数
+     */
+    public void evictQuiz(String quizId) {
+        completed.keySet().removeIf(k -> k.quizId().equals(quizId));
+    }
+
+    private AtomicInteger counter(Long userId, Long courseId, String quizId, LongSupplier loader) {
+        return completed.computeIfAbsent(new Key(userId, courseId, quizId),
+                k -> new AtomicInteger((int) Math.min(Integer.MAX_VALUE - 1, loader.getAsLong())));
+    }
+}
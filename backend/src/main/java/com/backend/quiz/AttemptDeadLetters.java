@@ -0,0 +1,60 @@
+package com.backend.quiz;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 答卷事件的死信存储：AttemptEventPipeline 整批写入失败并逐条重试后仍失败的事件写入 attempt_dead_letter，
+ * 不再静默丢弃；死信本身也写不进去时（如数据库不可用）把完整事件记入错误日志
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttemptDeadLetters {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    public void record(AttemptEvent event, RuntimeException cause) {
+        String payload;
+        try {
+            payload = JSON.writeValueAsString(payload(event));
+        } catch (JsonProcessingException e) {
+            log.error("Dropped quiz attempt event {}: cannot serialize", event, cause);
+            return;
+        }
+        String error = String.valueOf(cause);
+        if (error.length() > MAX_ERROR_LENGTH) error = error.substring(0, MAX_ERROR_LENGTH);
+        try {
+            jdbc.update("INSERT INTO attempt_dead_letter (user_id, course_id, quiz_id, submitted_at, payload, error, failed_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    event.userId(), event.courseId(), event.quizId(), Timestamp.valueOf(event.submittedAt()),
+                    payload, error, Timestamp.valueOf(LocalDateTime.now()));
+            log.error("Moved quiz attempt event of user {} quiz {} to dead letters", event.userId(), event.quizId(), cause);
+        } catch (DataAccessException e) {
+            log.error("Dropped quiz attempt event of user {} course {} quiz {} submitted at {}: {}",
+                    event.userId(), event.courseId(), event.quizId(), event.submittedAt(), payload, cause);
+        }
+    }
+
+    private static Map<String, Object> payload(AttemptEvent event) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("questionsVersion", event.questionsVersion());
+        payload.put("score", event.score());
+        payload.put("total", event.total());
+        payload.put("outcome", event.outcome());
+        payload.put("wrongAnswers", event.wrongAnswers());
+        return payload;
+    }
+}
@@ -0,0 +1,18 @@
+package com.backend.quiz;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 一次已判分的答卷，交给 AttemptEventPipeline 异步写入作答历史、进度与错题本；
+ * questionsVersion 为判分所用的题目内容版本
+ */
+public record AttemptEvent(Long userId, Long courseId, String quizId, int questionsVersion, int score, int total,
+                           AttemptOutcome outcome, List<WrongAnswer> wrongAnswers, LocalDateTime submittedAt) {
+
+    /**
+     * 答错且有题目实体的题目，以及用户提交的选项下标
+     */
+    public record WrongAnswer(Long questionEntityId, List<Integer> answer) {
+    }
+}
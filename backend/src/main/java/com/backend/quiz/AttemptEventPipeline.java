@@ -0,0 +1,149 @@
+package com.backend.quiz;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 答卷副作用（进度、错题本）的异步写入管道：判分后事件进入有界队列，由若干虚拟线程批量取出，
+ * 交给 AttemptBatchWriter 合并为 JDBC batch 写库。按用户 id 分片到各自的队列，
+ * 同一用户的事件由同一线程按顺序处理。
+ * 队列满时提交线程等待片刻，仍满则在提交线程上同步写入（背压，不丢事件）；
+ * 整批写入失败时逐条重试，仍失败的事件交给 AttemptDeadLetters；
+ * 关闭时在 Web 服务停止接收请求之后停止，并写完队列中剩余的事件
+ */
+@Slf4j
+@Component
+public class AttemptEventPipeline implements SmartLifecycle {
+    private static final long POLL_MILLIS = 200;
+
+    private final AttemptBatchWriter writer;
+    private final AttemptDeadLetters deadLetters;
+    private final List<BlockingQueue<AttemptEvent>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final long drainTimeoutMillis;
+    private volatile boolean running;
+
+    public AttemptEventPipeline(AttemptBatchWriter writer,
+                                AttemptDeadLetters deadLetters,
+                                @Value("${app.attempts.workers:4}") int workerCount,
+                                @Value("${app.attempts.queue-capacity:10000}") int capacity,
+                                @Value("${app.attempts.batch-size:200}") int batchSize,
+                                @Value("${app.attempts.offer-timeout-ms:500}") long offerTimeoutMillis,
+                                @Value("${app.attempts.drain-timeout-ms:30000}") long drainTimeoutMillis) {
+        this.writer = writer;
+        this.deadLetters = deadLetters;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        int perQueue = Math.max(1, capacity / workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            queues.add(new ArrayBlockingQueue<>(perQueue));
+        }
+    }
+
+    /**
+     * 提交事件；管道未运行（启动前或关闭中）时直接同步写入
+     */
+    public void publish(AttemptEvent event) {
+        if (running) {
+            BlockingQueue<AttemptEvent> queue = queues.get(Math.floorMod(event.userId().hashCode(), queues.size()));
+            try {
+                if (queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writer.write(List.of(event));
+    }
+
+    private void run(BlockingQueue<AttemptEvent> queue) {
+        List<AttemptEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            AttemptEvent first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (first == null) continue;
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            flush(batch);
+        }
+    }
+
+    /**
+     * 整批写入；失败时逐条重试，把出问题的事件与同批其他事件隔离开，仍失败的写入死信表
+     */
+    private void flush(List<AttemptEvent> batch) {
+        try {
+            writer.write(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist {} quiz attempt events, retrying one by one", batch.size(), e);
+            for (AttemptEvent event : batch) {
+                try {
+                    writer.write(List.of(event));
+                } catch (RuntimeException single) {
+                    deadLetters.record(event, single);
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < queues.size(); i++) {
+            BlockingQueue<AttemptEvent> queue = queues.get(i);
+            workers.add(Thread.ofVirtual().name("attempt-writer-" + i).start(() -> run(queue)));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long deadline = System.currentTimeMillis() + drainTimeoutMillis;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.clear();
+        // 兜底：停止过程中仍进入队列的事件在当前线程写完
+        List<AttemptEvent> rest = new ArrayList<>(batchSize);
+        for (BlockingQueue<AttemptEvent> queue : queues) {
+            while (queue.drainTo(rest, batchSize) > 0) {
+                flush(rest);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 低于 Web 服务优雅关闭的阶段，保证先停止接收请求、再排空队列
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,75 @@
+package com.backend.quiz;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 一次答卷中每道题结果的紧凑编码（题目按作答时测验中的顺序）：
+ * correct / answered / presented 为位图（第 i 题对应第 i 位），chosen 为每题所选选项位掩码的无符号 varint 序列，
+ * 选项不超过 7 个时每题只占 1 字节。presented 为 null 表示全部题目都出现在本次作答中（未抽题的测验）
+ */
+public record AttemptOutcome(int questionCount, byte[] correct, byte[] answered, byte[] chosen, byte[] presented) {
+
+    /**
+     * @param presented 抽题测验中每题是否被抽中；未抽题时为 null
+     */
+    public static AttemptOutcome of(boolean[] correct, boolean[] answered, long[] chosen, boolean[] presented) {
+        ByteArrayOutputStream masks = new ByteArrayOutputStream(chosen.length);
+        for (long mask : chosen) {
+            long v = mask;
+            while ((v & ~0x7FL) != 0) {
+                masks.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            masks.write((int) v);
+        }
+        return new AttemptOutcome(correct.length, bits(correct), bits(answered), masks.toByteArray(),
+                presented == null ? null : bits(presented));
+    }
+
+    private static byte[] bits(boolean[] flags) {
+        byte[] bytes = new byte[(flags.length + 7) / 8];
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i]) bytes[i >>> 3] |= (byte) (1 << (i & 7));
+        }
+        return bytes;
+    }
+
+    private static boolean bit(byte[] bytes, int i) {
+        return bytes != null && (i >>> 3) < bytes.length && (bytes[i >>> 3] & (1 << (i & 7))) != 0;
+    }
+
+    public boolean isCorrect(int question) {
+        return bit(correct, question);
+    }
+
+    public boolean isAnswered(int question) {
+        return bit(answered, question);
+    }
+
+    /**
+     * 该题是否出现在本次作答中（抽题测验中未抽中的题目不算答错）
+     */
+    public boolean isPresented(int question) {
+        return presented == null || bit(presented, question);
+    }
+
+    /**
+     * 解码每题所选选项的位掩码
+     */
+    public long[] chosenMasks() {
+        long[] masks = new long[questionCount];
+        int pos = 0;
+        for (int i = 0; i < questionCount && chosen != null && pos < chosen.length; i++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = chosen[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && pos < chosen.length);
+            masks[i] = v;
+        }
+        return masks;
+    }
+}
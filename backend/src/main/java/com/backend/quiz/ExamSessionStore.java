@@ -0,0 +1,339 @@
+package com.backend.quiz;
+
+import com.backend.entity.ExamSession;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进行中的限时考试会话：状态只保存在内存中（数量有上限），自动保存只修改内存；
+ * 由一个虚拟线程定期把有变化的会话批量写入 exam_session（write-behind 快照），
+ * 并推进时间轮，把超过截止时间加 grace-ms 的会话交给到期处理器（ExamSessionService 自动交卷）。
+ * 启动时从 exam_session 中进行中的行恢复会话；关闭时写完最后一次快照，会话在下次启动时恢复
+ */
+@Slf4j
+@Component
+public class ExamSessionStore implements SmartLifecycle {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, List<Integer>>> ANSWERS = new TypeReference<>() {};
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final JdbcTemplate jdbc;
+    private final int maxSessions;
+    private final long snapshotIntervalMillis;
+    /** 与 ExamSessionService 交卷时容许的延迟一致，宽限期内的交卷不会被自动交卷抢先关闭 */
+    private final long graceMillis;
+
+    private final Map<String, LiveSession> sessions = new ConcurrentHashMap<>();
+    /** (用户, 测验) → 进行中的会话 id，同一用户同一测验最多一个进行中的会话 */
+    private final Map<String, String> active = new ConcurrentHashMap<>();
+    private final TimerWheel<LiveSession> wheel = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+    private volatile Consumer<LiveSession> expiryHandler = s -> { };
+    private volatile boolean running;
+    private Thread ticker;
+
+    public ExamSessionStore(JdbcTemplate jdbc,
+                            @Value("${app.exams.max-sessions:10000}") int maxSessions,
+                            @Value("${app.exams.snapshot-interval-ms:5000}") long snapshotIntervalMillis,
+                            @Value("${app.exams.grace-ms:2000}") long graceMillis) {
+        this.jdbc = jdbc;
+        this.maxSessions = maxSessions;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.graceMillis = graceMillis;
+    }
+
+    /**
+     * 进行中的会话。答案按题目 id 保存，每次自动保存覆盖对应题目；
+     * version / savedVersion 用于判断是否有尚未写入快照的修改
+     */
+    public static final class LiveSession {
+        private final String id;
+        private final Long userId;
+        private final Long courseId;
+        private final String quizId;
+        /** 本次考试的作答序号，抽题/乱序测验的版本由它派生 */
+        private final int attempt;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime deadline;
+        private final long deadlineMillis;
+        private final Map<String, List<Integer>> answers;
+        private long version;
+        private long savedVersion;
+        private boolean closed;
+
+        LiveSession(String id, Long userId, Long courseId, String quizId, int attempt, LocalDateTime startedAt,
+                    LocalDateTime deadline, Map<String, List<Integer>> answers) {
+            this.id = id;
+            this.userId = userId;
+            this.courseId = courseId;
+            this.quizId = quizId;
+            this.attempt = attempt;
+            this.startedAt = startedAt;
+            this.deadline = deadline;
+            this.deadlineMillis = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            this.answers = answers;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public Long userId() {
+            return userId;
+        }
+
+        public Long courseId() {
+            return courseId;
+        }
+
+        public String quizId() {
+            return quizId;
+        }
+
+        public int attempt() {
+            return attempt;
+        }
+
+        public LocalDateTime startedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime deadline() {
+            return deadline;
+        }
+
+        public long deadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * 覆盖所给题目的答案；会话已结束时返回 false
+         */
+        public synchronized boolean save(List<? extends AnswerKey.Response> updates) {
+            if (closed) return false;
+            for (AnswerKey.Response r : updates) {
+                if (r.getQuestionId() == null) continue;
+                answers.put(r.getQuestionId(), r.getAnswer() == null ? List.of() : new ArrayList<>(r.getAnswer()));
+            }
+            version++;
+            return true;
+        }
+
+        public synchronized Map<String, List<Integer>> answers() {
+            return new LinkedHashMap<>(answers);
+        }
+
+        public synchronized int answeredCount() {
+            return answers.size();
+        }
+
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * 结束会话（提交或到期），只有第一次调用返回 true
+         */
+        public synchronized boolean close() {
+            if (closed) return false;
+            closed = true;
+            return true;
+        }
+
+        /**
+         * 有未写入快照的修改时返回答案副本并标记为已保存，否则返回 null
+         */
+        synchronized Map<String, List<Integer>> takeSnapshot() {
+            if (closed || version == savedVersion) return null;
+            savedVersion = version;
+            return new LinkedHashMap<>(answers);
+        }
+    }
+
+    private static String activeKey(Long userId, String quizId) {
+        return userId + ":" + quizId;
+    }
+
+    public void setExpiryHandler(Consumer<LiveSession> handler) {
+        this.expiryHandler = handler;
+    }
+
+    public LiveSession get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public LiveSession findActive(Long userId, String quizId) {
+        String id = active.get(activeKey(userId, quizId));
+        return id == null ? null : sessions.get(id);
+    }
+
+    /**
+     * 创建会话：写入 exam_session 行后放入内存并登记截止时间；该用户在此测验已有进行中的会话时直接返回它
+     * （保留其原有的作答序号）。已达上限时返回 503
+     */
+    public synchronized LiveSession open(Long userId, Long courseId, String quizId, int attempt,
+                                         LocalDateTime startedAt, LocalDateTime deadline) {
+        LiveSession existing = findActive(userId, quizId);
+        if (existing != null && !existing.isClosed()) return existing;
+        if (sessions.size() >= maxSessions) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many active exam sessions");
+        }
+        LiveSession session = new LiveSession(UUID.randomUUID().toString(), userId, courseId, quizId, attempt,
+                startedAt, deadline, new LinkedHashMap<>());
+        jdbc.update("INSERT INTO exam_session (id, user_id, course_id, quiz_id, attempt, status, started_at, deadline) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                session.id, userId, courseId, quizId, attempt, ExamSession.Status.IN_PROGRESS.name(),
+                Timestamp.valueOf(startedAt), Timestamp.valueOf(deadline));
+        register(session);
+        return session;
+    }
+
+    private void register(LiveSession session) {
+        sessions.put(session.id, session);
+        active.put(activeKey(session.userId, session.quizId), session.id);
+        wheel.schedule(session, session.deadlineMillis + graceMillis);
+    }
+
+    /**
+     * 写入最终答案与结果并移出内存；会话须已 close()。判分失败时 score 为 null
+     */
+    public void finish(LiveSession session, ExamSession.Status status, Integer score, LocalDateTime submittedAt) {
+        try {
+            jdbc.update("UPDATE exam_session SET status = ?, answers = ?, saved_at = ?, score = ?, submitted_at = ? WHERE id = ?",
+                    status.name(), toJson(session.answers()), Timestamp.valueOf(submittedAt), score,
+                    Timestamp.valueOf(submittedAt), session.id);
+        } finally {
+            sessions.remove(session.id);
+            active.remove(activeKey(session.userId, session.quizId), session.id);
+        }
+    }
+
+    /**
+     * 把有修改的会话答案批量写入快照
+     */
+    public void snapshot() {
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (LiveSession s : sessions.values()) {
+            Map<String, List<Integer>> answers = s.takeSnapshot();
+            if (answers != null) rows.add(new Object[]{toJson(answers), now, s.id});
+        }
+        if (rows.isEmpty()) return;
+        // 只更新仍在进行中的行，不覆盖已交卷的最终结果
+        jdbc.batchUpdate("UPDATE exam_session SET answers = ?, saved_at = ? WHERE id = ? AND status = 'IN_PROGRESS'", rows);
+    }
+
+    private void run() {
+        long nextSnapshot = System.currentTimeMillis() + snapshotIntervalMillis;
+        while (running) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long now = System.currentTimeMillis();
+            for (LiveSession s : wheel.advance(now)) {
+                if (s.isClosed()) continue;
+                // 自动交卷包含判分与写库，不占用时间轮线程
+                Thread.ofVirtual().name("exam-expiry-" + s.id).start(() -> expire(s));
+            }
+            if (now >= nextSnapshot) {
+                nextSnapshot = now + snapshotIntervalMillis;
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.error("Failed to snapshot exam sessions", e);
+                }
+            }
+        }
+    }
+
+    private void expire(LiveSession s) {
+        try {
+            expiryHandler.accept(s);
+        } catch (RuntimeException e) {
+            log.error("Failed to auto-submit exam session {}", s.id, e);
+        }
+    }
+
+    private void recover() {
+        jdbc.query("SELECT id, user_id, course_id, quiz_id, attempt, started_at, deadline, answers FROM exam_session "
+                        + "WHERE status = 'IN_PROGRESS'",
+                rs -> {
+                    // 升级前创建的会话没有记录序号，按第 1 次作答处理
+                    int attempt = rs.getInt(5);
+                    register(new LiveSession(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getString(4),
+                            rs.wasNull() ? 1 : attempt,
+                            rs.getTimestamp(6).toLocalDateTime(), rs.getTimestamp(7).toLocalDateTime(),
+                            fromJson(rs.getString(8))));
+                });
+    }
+
+    private static String toJson(Map<String, List<Integer>> answers) {
+        try {
+            return JSON.writeValueAsString(answers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize exam answers", e);
+        }
+    }
+
+    private static Map<String, List<Integer>> fromJson(String json) {
+        if (json == null || json.isBlank()) return new LinkedHashMap<>();
+        try {
+            return JSON.readValue(json, ANSWERS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read exam answers", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        recover();
+        running = true;
+        ticker = Thread.ofVirtual().name("exam-session-ticker").start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+            try {
+                ticker.join(TICK_MILLIS * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ticker = null;
+        }
+        snapshot();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在 Web 服务停止接收请求之后、AttemptEventPipeline 之前停止（到期自动交卷会发布答卷事件）
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+}
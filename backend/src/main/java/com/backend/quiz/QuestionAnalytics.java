@@ -0,0 +1,214 @@
+package com.backend.quiz;
+
+import com.backend.entity.Quiz;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 测验逐题统计的增量聚合：作答次数、答对率（难度）、各选项被选次数、点二列相关（区分度）。
+ * 计数器均为 LongAdder，判分结果写库后由 AttemptBatchWriter 累加，查询时只读计数器，不扫描作答记录。
+ * 某测验首次查询时从 quiz_attempt 流式加载一次（只取当前题目版本 questions_version 的作答，
+ * 只改标题、限时等设置不会重置统计）；测验修改或删除后由 QuizService 丢弃，下次查询重新加载
+ */
+@Component
+@RequiredArgsConstructor
+public class QuestionAnalytics {
+    private static final int MAX_OPTIONS = 63;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    private final Map<String, QuizStats> stats = new ConcurrentHashMap<>();
+    /**
+     * 按测验加锁：写库+累加持有所涉测验的读锁、首次加载持有该测验的写锁。
+     * 保证每条作答要么被加载扫描到，要么在加载完成后被累加，不会重复或遗漏；加载只阻塞同一测验的作答写入
+     */
+    private final Map<String, ReentrantReadWriteLock> loading = new ConcurrentHashMap<>();
+
+    private ReentrantReadWriteLock lock(String key) {
+        return loading.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+    }
+
+    private static String key(Long courseId, String quizId) {
+        return courseId + ":" + quizId;
+    }
+
+    /**
+     * presented 为该题出现过的作答次数（抽题测验中被抽中的次数），答对率与区分度只在这些作答中计算
+     */
+    public record QuestionStats(int index, String questionId, long presented, long answered, long correct,
+                                double correctRate, Double discrimination, long[] optionCounts) {
+    }
+
+    public record Snapshot(long attempts, Double averageScore, List<QuestionStats> questions) {
+    }
+
+    private static final class QuizStats {
+        final int version;
+        final String[] questionIds;
+        final LongAdder attempts = new LongAdder();
+        final LongAdder scoreSum = new LongAdder();
+        /** 每题出现过的作答次数及这些作答的总分之和、平方和 */
+        final LongAdder[] presented;
+        final LongAdder[] presentedScoreSum;
+        final LongAdder[] presentedScoreSquareSum;
+        final LongAdder[] answered;
+        final LongAdder[] correct;
+        /** 答对者的总分之和，用于计算点二列相关 */
+        final LongAdder[] correctScoreSum;
+        final LongAdder[][] options;
+
+        QuizStats(int version, List<Quiz.Question> questions) {
+            this.version = version;
+            int n = questions.size();
+            questionIds = new String[n];
+            presented = new LongAdder[n];
+            presentedScoreSum = new LongAdder[n];
+            presentedScoreSquareSum = new LongAdder[n];
+            answered = new LongAdder[n];
+            correct = new LongAdder[n];
+            correctScoreSum = new LongAdder[n];
+            options = new LongAdder[n][];
+            for (int i = 0; i < n; i++) {
+                Quiz.Question q = questions.get(i);
+                questionIds[i] = q.getId();
+                presented[i] = new LongAdder();
+                presentedScoreSum[i] = new LongAdder();
+                presentedScoreSquareSum[i] = new LongAdder();
+                answered[i] = new LongAdder();
+                correct[i] = new LongAdder();
+                correctScoreSum[i] = new LongAdder();
+                int optionCount = Math.min(q.getOptions() == null ? 0 : q.getOptions().size(), MAX_OPTIONS);
+                options[i] = new LongAdder[optionCount];
+                for (int j = 0; j < optionCount; j++) options[i][j] = new LongAdder();
+            }
+        }
+
+        void add(int version, int score, AttemptOutcome outcome) {
+            int n = questionIds.length;
+            // 按旧题目版本判分的作答（修改前提交、修改后才写库）不计入
+            if (version != this.version || outcome.questionCount() != n) return;
+            attempts.increment();
+            scoreSum.add(score);
+            long[] masks = outcome.chosenMasks();
+            for (int i = 0; i < n; i++) {
+                // 抽题测验中未抽中的题目不计入该题的任何统计
+                if (!outcome.isPresented(i)) continue;
+                presented[i].increment();
+                presentedScoreSum[i].add(score);
+                presentedScoreSquareSum[i].add((long) score * score);
+                if (outcome.isAnswered(i)) answered[i].increment();
+                if (outcome.isCorrect(i)) {
+                    correct[i].increment();
+                    correctScoreSum[i].add(score);
+                }
+                LongAdder[] counters = options[i];
+                for (long m = masks[i]; m != 0; m &= m - 1) {
+                    int option = Long.numberOfTrailingZeros(m);
+                    if (option < counters.length) counters[option].increment();
+                }
+            }
+        }
+
+        Snapshot snapshot() {
+            long total = attempts.sum();
+            Double mean = total == 0 ? null : scoreSum.sum() / (double) total;
+
+            QuestionStats[] questions = new QuestionStats[questionIds.length];
+            for (int i = 0; i < questionIds.length; i++) {
+                long shown = presented[i].sum();
+                double sum = presentedScoreSum[i].sum();
+                double variance = shown == 0 ? 0
+                        : presentedScoreSquareSum[i].sum() / (double) shown - (sum / shown) * (sum / shown);
+                double sd = variance > 0 ? Math.sqrt(variance) : 0;
+                long c = correct[i].sum();
+                long[] optionCounts = new long[options[i].length];
+                for (int j = 0; j < optionCounts.length; j++) optionCounts[j] = options[i][j].sum();
+                double p = shown == 0 ? 0 : c / (double) shown;
+                questions[i] = new QuestionStats(i, questionIds[i], shown, answered[i].sum(), c, p,
+                        pointBiserial(shown, c, sum, correctScoreSum[i].sum(), sd), optionCounts);
+            }
+            return new Snapshot(total, mean, List.of(questions));
+        }
+
+        /**
+         * r = (M1 - M0) / s * sqrt(p * q)，在该题出现过的作答中计算：M1/M0 为答对/答错者的平均总分，s 为总分标准差；
+         * 全部答对、全部答错或总分无差异时无定义
+         */
+        private static Double pointBiserial(long total, long correct, double scoreSum, double correctScoreSum, double sd) {
+            if (correct == 0 || correct == total || sd == 0) return null;
+            double m1 = correctScoreSum / correct;
+            double m0 = (scoreSum - correctScoreSum) / (total - correct);
+            double p = correct / (double) total;
+            return (m1 - m0) / sd * Math.sqrt(p * (1 - p));
+        }
+    }
+
+    /**
+     * 执行写库操作，并在同一组读锁内把已提交的作答累加到已加载的统计上。
+     * 按测验 key 的字典序加读锁，避免与其他批次交错死锁
+     */
+    public void recordAfter(Runnable persist, List<AttemptEvent> events) {
+        TreeSet<String> keys = new TreeSet<>();
+        for (AttemptEvent e : events) keys.add(key(e.courseId(), e.quizId()));
+        List<ReentrantReadWriteLock.ReadLock> held = new ArrayList<>(keys.size());
+        try {
+            for (String key : keys) {
+                ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+                lock.lock();
+                held.add(lock);
+            }
+            persist.run();
+            for (AttemptEvent e : events) {
+                QuizStats s = stats.get(key(e.courseId(), e.quizId()));
+                if (s != null) s.add(e.questionsVersion(), e.score(), e.outcome());
+            }
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) held.get(i).unlock();
+        }
+    }
+
+    public Snapshot snapshot(Quiz quiz) {
+        String key = key(quiz.getCourseId(), quiz.getId());
+        QuizStats s = stats.get(key);
+        if (s == null) {
+            ReentrantReadWriteLock.WriteLock lock = lock(key).writeLock();
+            lock.lock();
+            try {
+                s = stats.computeIfAbsent(key, k -> load(quiz));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return s.snapshot();
+    }
+
+    public void evict(Long courseId, String quizId) {
+        stats.remove(key(courseId, quizId));
+    }
+
+    private QuizStats load(Quiz quiz) {
+        int version = Objects.requireNonNullElse(quiz.getQuestionsVersion(), 1);
+        QuizStats s = new QuizStats(version, quiz.getQuestions() == null ? List.of() : quiz.getQuestions());
+        MapSqlParameterSource params = new MapSqlParameterSource("courseId", quiz.getCourseId())
+                .addValue("quizId", quiz.getId())
+                .addValue("version", version);
+        RowCallbackHandler accumulate = rs -> s.add(version, rs.getInt(1),
+                new AttemptOutcome(rs.getInt(2), rs.getBytes(3), rs.getBytes(4), rs.getBytes(5), rs.getBytes(6)));
+        jdbc.query("SELECT score, question_count, correct_bits, answered_bits, chosen_masks, presented_bits "
+                + "FROM quiz_attempt WHERE course_id = :courseId AND quiz_id = :quizId AND questions_version = :version",
+                params, accumulate);
+        return s;
+    }
+}
@@ -0,0 +1,117 @@
+package com.backend.quiz;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 某个学生某次作答看到的测验版本：从题库中抽取的题目、题目顺序与每题选项顺序。
+ * 完全由 (用户 id, 测验 id, 第几次作答) 派生的种子经 SplittableRandom 确定，不需要保存；
+ * 出题与判分时各自重新派生，得到相同结果。只涉及下标数组，不复制或反序列化题目
+ */
+public final class QuizVariant {
+    /** 展示顺序 → 题目下标 */
+    private final int[] order;
+    /** 题目下标 → (展示位置 → 原选项下标)；不打乱选项或未抽中时为 null */
+    private final int[][] options;
+    /** 题目下标 → 本套中的分值；未抽中为 0 */
+    private final int[] scores;
+    private final boolean[] drawn;
+
+    private QuizVariant(int[] order, int[][] options, int[] scores, boolean[] drawn) {
+        this.order = order;
+        this.options = options;
+        this.scores = scores;
+        this.drawn = drawn;
+    }
+
+    /**
+     * @param optionCounts   每题选项数
+     * @param shuffleOptions 每题是否允许打乱选项（判断题保持原顺序）
+     * @param drawCount      抽取题数，超出题库大小时取全部
+     * @param shuffle        是否打乱题目与选项顺序；否则抽中的题目保持测验中的顺序
+     */
+    static QuizVariant derive(long seed, int[] optionCounts, boolean[] shuffleOptions, int drawCount, boolean shuffle) {
+        int n = optionCounts.length;
+        int k = Math.min(Math.max(drawCount, 0), n);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // 部分 Fisher-Yates：只洗前 k 个位置
+        int[] pool = new int[n];
+        for (int i = 0; i < n; i++) pool[i] = i;
+        for (int i = 0; i < k; i++) {
+            swap(pool, i, i + random.nextInt(n - i));
+        }
+        int[] order = Arrays.copyOf(pool, k);
+        if (!shuffle) Arrays.sort(order);
+
+        // 总分固定为 100，只在抽中的题目间分配，规则与 AnswerKey 相同
+        int base = k == 0 ? 0 : AnswerKey.MAX_SCORE / k;
+        int remainder = k == 0 ? 0 : AnswerKey.MAX_SCORE % k;
+        int[][] options = new int[n][];
+        int[] scores = new int[n];
+        boolean[] drawn = new boolean[n];
+        for (int p = 0; p < k; p++) {
+            int q = order[p];
+            drawn[q] = true;
+            scores[q] = base + (p < remainder ? 1 : 0);
+            if (shuffle && shuffleOptions[q]) {
+                int[] perm = new int[optionCounts[q]];
+                for (int i = 0; i < perm.length; i++) perm[i] = i;
+                for (int i = perm.length - 1; i > 0; i--) {
+                    swap(perm, i, random.nextInt(i + 1));
+                }
+                options[q] = perm;
+            }
+        }
+        return new QuizVariant(order, options, scores, drawn);
+    }
+
+    /**
+     * 由 (用户, 测验, 第几次作答) 得到 64 位种子（SplitMix64 混合）
+     */
+    static long seed(Long userId, String quizId, int attempt) {
+        long h = mix(userId == null ? 0L : userId);
+        h = mix(h ^ quizId.hashCode());
+        return mix(h ^ attempt);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * 第 position 个展示的题目在测验中的下标
+     */
+    public int questionAt(int position) {
+        return order[position];
+    }
+
+    public boolean isDrawn(int question) {
+        return drawn[question];
+    }
+
+    public int score(int question) {
+        return scores[question];
+    }
+
+    /**
+     * 展示位置 position 上是原来的第几个选项
+     */
+    public int canonicalOption(int question, int position) {
+        int[] perm = options[question];
+        if (perm == null || position < 0 || position >= perm.length) return position;
+        return perm[position];
+    }
+}
@@ -0,0 +1,73 @@
+package com.backend.quiz;
+
+import java.time.LocalDateTime;
+
+/**
+ * 错题复习调度（SM-2）：按每次复习的自评质量 0~5 更新难度系数、间隔与连续答对次数。
+ * 与原始 SM-2 的区别是答错（质量 < 3）后间隔为 0，即立即重新进入待复习队列，而不是次日。
+ * 纯函数，无状态、不访问数据库，结果只由输入决定
+ */
+public final class SpacedRepetition {
+    public static final double INITIAL_EASE = 2.5;
+    public static final double MIN_EASE = 1.3;
+    public static final int MIN_QUALITY = 0;
+    public static final int MAX_QUALITY = 5;
+    /** 测验中再次答错视为一次质量为 1 的复习 */
+    public static final int LAPSE_QUALITY = 1;
+
+    private SpacedRepetition() {
+    }
+
+    /**
+     * 调度状态：难度系数、当前间隔（天）、连续答对次数
+     */
+    public record State(double ease, int intervalDays, int repetitions) {
+        public static final State NEW = new State(INITIAL_EASE, 0, 0);
+    }
+
+    /**
+     * 一次复习后的新状态
+     */
+    public static State review(State state, int quality) {
+        int q = Math.clamp(quality, MIN_QUALITY, MAX_QUALITY);
+        double ease = easeAfter(state.ease(), q);
+        if (q < 3) {
+            return new State(ease, 0, 0);
+        }
+        int repetitions = state.repetitions() + 1;
+        int interval = switch (repetitions) {
+            case 1 -> 1;
+            case 2 -> 6;
+            default -> (int) Math.min(Integer.MAX_VALUE, Math.round(state.intervalDays() * ease));
+        };
+        return new State(ease, Math.max(interval, 1), repetitions);
+    }
+
+    /**
+     * EF' = EF + (0.1 - (5 - q) * (0.08 + (5 - q) * 0.02))，不低于 1.3
+     */
+    public static double easeAfter(double ease, int quality) {
+        int d = MAX_QUALITY - Math.clamp(quality, MIN_QUALITY, MAX_QUALITY);
+        return Math.max(MIN_EASE, ease + 0.1 - d * (0.08 + d * 0.02));
+    }
+
+    /**
+     * 难度系数的变化量（未截断），供批量 SQL 更新使用
+     */
+    public static double easeDelta(int quality) {
+        int d = MAX_QUALITY - Math.clamp(quality, MIN_QUALITY, MAX_QUALITY);
+        return 0.1 - d * (0.08 + d * 0.02);
+    }
+
+    /**
+     * 连续 lapses 次答错后难度系数的变化量（未截断），供批量 SQL 更新使用。
+     * 答错的变化量为负，逐次截断到 1.3 与累加后一次截断结果相同
+     */
+    public static double lapseEaseDelta(int lapses) {
+        return lapses * easeDelta(LAPSE_QUALITY);
+    }
+
+    public static LocalDateTime dueAt(State state, LocalDateTime reviewedAt) {
+        return reviewedAt.plusDays(state.intervalDays());
+    }
+}
@@ -0,0 +1,117 @@
+package com.backend.quiz;
+
+import com.backend.entity.Quiz;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按测验 id 缓存普通用户看到的测验（不含答案），以序列化好的 JSON 字节保存，
+ * 每个测验版本只构建一次，之后直接写入响应。测验更新/删除后由 QuizService 调用 evict；
+ * 读取数据到放入缓存之间若发生过 evict，结果只用于本次请求而不写入缓存（与 AnswerKeyCache 相同）
+ */
+@Component
+public class StudentViewCache {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Map<String, StudentView> views = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 缓存的学生视图；authorId 用于判断请求者是否应看到含答案的完整视图，
+     * questions 为不含答案、不可修改的题目（生成个人版本时按下标重排，不再复制题目内容）
+     */
+    public record StudentView(Long courseId, Long authorId, List<Quiz.Question> questions, byte[] json) {
+    }
+
+    /**
+     * 序列化的字段与 Quiz / Quiz.Question 的 JSON 一致，answer 固定为 null；
+     * 时间按 ISO-8601 预先格式化，与 Web 层对 LocalDateTime 的输出相同
+     */
+    private record QuizJson(String id, Long courseId, String title, List<QuestionJson> questions,
+                            Integer timeLimitMinutes, Integer drawCount, Boolean shuffle, Long authorId,
+                            String createdAt, String updatedAt) {
+    }
+
+    private record QuestionJson(String id, String type, String question, List<String> options, List<Integer> answer) {
+    }
+
+    /**
+     * 当前失效计数；须在读取测验数据之前取得，再传给 put
+     */
+    public long version() {
+        return evictions.get();
+    }
+
+    /**
+     * 已缓存的视图，未命中返回 null
+     */
+    public StudentView cached(String quizId) {
+        return views.get(quizId);
+    }
+
+    /**
+     * 自 version 取得以来没有发生过 evict 时才放入缓存
+     */
+    public void put(String quizId, StudentView view, long version) {
+        if (evictions.get() == version) views.putIfAbsent(quizId, view);
+    }
+
+    public void evict(String quizId) {
+        evictions.incrementAndGet();
+        views.remove(quizId);
+    }
+
+    /**
+     * 学生视图是否不下发题目：限时测验的题目只经考试会话下发；抽题/乱序测验每个学生的版本不同，
+     * 须通过 /variant 获取，否则会看到整个题库且选项顺序与判分所用的版本不一致。须已填充 questions
+     */
+    public static boolean hidesQuestions(Quiz quiz) {
+        if (quiz.getTimeLimitMinutes() != null) return true;
+        int size = quiz.getQuestions() == null ? 0 : quiz.getQuestions().size();
+        return Boolean.TRUE.equals(quiz.getShuffle()) || (quiz.getDrawCount() != null && quiz.getDrawCount() < size);
+    }
+
+    /**
+     * 由已填充 questions 的测验构建学生视图。hidesQuestions 为 true 时 JSON 中 questions 为空数组；
+     * questions 字段仍保留题目供会话与 /variant 生成个人版本
+     */
+    public static StudentView build(Quiz quiz) {
+        List<Quiz.Question> questions = quiz.getQuestions() == null ? List.of() : quiz.getQuestions();
+        List<QuestionJson> masked = new ArrayList<>(questions.size());
+        List<Quiz.Question> view = new ArrayList<>(questions.size());
+        for (Quiz.Question q : questions) {
+            List<String> options = q.getOptions() == null ? null : Collections.unmodifiableList(new ArrayList<>(q.getOptions()));
+            masked.add(new QuestionJson(q.getId(), q.getType(), q.getQuestion(), options, null));
+            view.add(Quiz.Question.builder()
+                    .id(q.getId())
+                    .type(q.getType())
+                    .question(q.getQuestion())
+                    .options(options)
+                    .build());
+        }
+        QuizJson json = new QuizJson(quiz.getId(), quiz.getCourseId(), quiz.getTitle(),
+                hidesQuestions(quiz) ? List.of() : masked,
+                quiz.getTimeLimitMinutes(), quiz.getDrawCount(), quiz.getShuffle(), quiz.getAuthorId(),
+                format(quiz.getCreatedAt()), format(quiz.getUpdatedAt()));
+        try {
+            return new StudentView(quiz.getCourseId(), quiz.getAuthorId(), Collections.unmodifiableList(view),
+                    JSON.writeValueAsBytes(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize quiz " + quiz.getId(), e);
+        }
+    }
+
+    private static String format(LocalDateTime time) {
+        return time == null ? null : time.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+}
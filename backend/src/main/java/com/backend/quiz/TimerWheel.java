@@ -0,0 +1,64 @@
+package com.backend.quiz;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 单层哈希时间轮：按 tick 把到期时间散列到固定数量的槽中，登记与推进都只触及少量槽，
+ * 不为每个定时项创建调度任务。到期时间超过一圈的项保留在槽中，直到所在 tick 到达才取出。
+ * 取消由调用方在到期回调中自行判断（如会话已提交则忽略）
+ */
+public final class TimerWheel<T> {
+    private final long tickMillis;
+    private final List<Entry<T>>[] slots;
+    private final int mask;
+    private long currentTick;
+
+    private record Entry<T>(long tick, T item) {
+    }
+
+    /**
+     * @param slotCount 槽数，向上取整为 2 的幂
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        int size = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.slots = new List[size];
+        for (int i = 0; i < size; i++) slots[i] = new ArrayList<>();
+        this.mask = size - 1;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * 登记在 deadlineMillis 之后的第一个 tick 到期；已过期的项在下一次推进时到期
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        slots[(int) (tick & mask)].add(new Entry<>(tick, item));
+    }
+
+    /**
+     * 推进到 nowMillis，返回期间到期的项
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        if (target <= currentTick) return List.of();
+        List<T> due = new ArrayList<>();
+        // 落后超过一圈时每个槽只需扫描一次
+        long from = Math.max(currentTick + 1, target - mask);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Entry<T>> it = slots[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                Entry<T> e = it.next();
+                if (e.tick() <= target) {
+                    due.add(e.item());
+                    it.remove();
+                }
+            }
+        }
+        currentTick = target;
+        return due;
+    }
+}
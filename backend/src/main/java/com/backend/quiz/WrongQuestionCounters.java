@@ -0,0 +1,95 @@
+package com.backend.quiz;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 按 (用户, 课程) 缓存错题统计。首次查询时用一次分组聚合加载，之后由写路径按增量调整：
+ * WrongQuestionService 的添加/标记已掌握/删除在事务提交后调用 adjust，
+ * AttemptBatchWriter 的批量写入提交后 evict 涉及的 (用户, 课程)，下次查询重新加载
+ */
+@Component
+public class WrongQuestionCounters {
+    private static final int STRIPES = 64;
+
+    private final Map<Key, Counts> counts = new ConcurrentHashMap<>();
+    /**
+     * 按用户分段：写库+调整持有所涉用户分段的读锁，首次加载持有该用户分段的写锁。
+     * 加载要么看到某次写入且该写入的增量尚未到来，要么看不到它且增量在加载之后才调整，不会重复或遗漏；
+     * 冷加载只阻塞同一分段内用户的写入
+     */
+    private final ReentrantReadWriteLock[] loading = new ReentrantReadWriteLock[STRIPES];
+
+    public WrongQuestionCounters() {
+        for (int i = 0; i < STRIPES; i++) loading[i] = new ReentrantReadWriteLock();
+    }
+
+    private record Key(Long userId, Long courseId) {
+    }
+
+    public record Counts(long total, long mastered) {
+        public long notMastered() {
+            return total - mastered;
+        }
+    }
+
+    public Counts get(Long userId, Long courseId, Supplier<Counts> loader) {
+        Key key = new Key(userId, courseId);
+        Counts cached = counts.get(key);
+        if (cached != null) return cached;
+        ReentrantReadWriteLock.WriteLock lock = loading[stripe(userId)].writeLock();
+        lock.lock();
+        try {
+            return counts.computeIfAbsent(key, k -> loader.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行某用户的写操作；action 须包含事务提交，并在提交之后调用 adjust / evict
+     */
+    public <T> T write(Long userId, Supplier<T> action) {
+        return write(List.of(userId), action);
+    }
+
+    /**
+     * 执行涉及多个用户的写操作；按分段序号升序加读锁，避免与其他多用户写入交错死锁
+     */
+    public <T> T write(Collection<Long> userIds, Supplier<T> action) {
+        int[] held = userIds.stream().mapToInt(WrongQuestionCounters::stripe).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int stripe : held) {
+                loading[stripe].readLock().lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) loading[held[i]].readLock().unlock();
+        }
+    }
+
+    /**
+     * 调整已缓存的计数；未缓存时不处理，下次查询从数据库加载
+     */
+    public void adjust(Long userId, Long courseId, long total, long mastered) {
+        if (total == 0 && mastered == 0) return;
+        counts.computeIfPresent(new Key(userId, courseId),
+                (k, c) -> new Counts(c.total() + total, c.mastered() + mastered));
+    }
+
+    public void evict(Long userId, Long courseId) {
+        counts.remove(new Key(userId, courseId));
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (STRIPES - 1);
+    }
+}
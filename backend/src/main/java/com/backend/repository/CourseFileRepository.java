@@ -2,6 +2,9 @@ package com.backend.repository;
 
 import com.backend.entity.CourseFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,4 +12,11 @@ import java.util.List;
 @Repository
 public interface CourseFileRepository extends JpaRepository<CourseFile, Long> {
     List<CourseFile> findByCourseIdOrderByCreatedAtDesc(Long courseId);
+
+    /**
+     * 删除文件记录，返回实际删除的行数；并发删除同一文件时只有一个请求得到 1
+     */
+    @Modifying
+    @Query("DELETE FROM CourseFile f WHERE f.id = :id")
+    int deleteRowById(@Param("id") Long id);
 }
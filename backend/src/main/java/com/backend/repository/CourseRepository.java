@@ -2,6 +2,9 @@ package com.backend.repository;
 
 import com.backend.entity.Course;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +13,11 @@ import java.util.Optional;
 public interface CourseRepository extends JpaRepository<Course, Long> {
     boolean existsByTitle(String title);
     Optional<Course> findByTitle(String title);
+
+    /**
+     * 增减课程的测验数
+     */
+    @Modifying
+    @Query("UPDATE Course c SET c.quizCount = COALESCE(c.quizCount, 0) + :delta WHERE c.id = :id")
+    int addQuizCount(@Param("id") Long id, @Param("delta") long delta);
 }
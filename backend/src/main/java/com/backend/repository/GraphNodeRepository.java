@@ -0,0 +1,24 @@
+package com.backend.repository;
+
+import com.backend.entity.GraphNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GraphNodeRepository extends JpaRepository<GraphNode, Long> {
+    List<GraphNode> findByCourseIdOrderByIdAsc(Long courseId);
+    Optional<GraphNode> findByCourseIdAndNodeId(Long courseId, String nodeId);
+    List<GraphNode> findByCourseIdAndNodeIdIn(Long courseId, Collection<String> nodeIds);
+    boolean existsByCourseId(Long courseId);
+
+    @Modifying
+    @Query("DELETE FROM GraphNode n WHERE n.courseId = :courseId")
+    int deleteByCourseId(@Param("courseId") Long courseId);
+}
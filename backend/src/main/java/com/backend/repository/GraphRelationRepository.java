@@ -0,0 +1,30 @@
+package com.backend.repository;
+
+import com.backend.entity.GraphRelation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GraphRelationRepository extends JpaRepository<GraphRelation, Long> {
+    List<GraphRelation> findByCourseIdOrderByIdAsc(Long courseId);
+    Optional<GraphRelation> findByCourseIdAndRelationId(Long courseId, String relationId);
+    List<GraphRelation> findByCourseIdAndRelationIdIn(Long courseId, Collection<String> relationIds);
+
+    /**
+     * 以给定节点为起点的关系的 [from, to, type]，导入时按块检查重复关系
+     */
+    @Query("SELECT r.fromNodeId, r.toNodeId, r.type FROM GraphRelation r "
+            + "WHERE r.courseId = :courseId AND r.fromNodeId IN :from")
+    List<Object[]> findKeysFrom(@Param("courseId") Long courseId, @Param("from") Collection<String> from);
+
+    @Modifying
+    @Query("DELETE FROM GraphRelation r WHERE r.courseId = :courseId")
+    int deleteByCourseId(@Param("courseId") Long courseId);
+}
@@ -1,25 +1,39 @@
 package com.backend.repository;
 
 import com.backend.entity.Graph;
+import com.backend.util.IdAllocator;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 public interface GraphRepository extends JpaRepository<Graph, Long>, GraphRepositoryCustom {
     Optional<Graph> findByCourseId(Long courseId);
     boolean existsByCourseId(Long courseId);
+
+    /**
+     * 仍保存旧版 JSON 节点/关系、尚未迁移的课程
+     */
+    @Query("SELECT g.courseId FROM Graph g WHERE g.nodes IS NOT NULL OR g.relations IS NOT NULL")
+    List<Long> findCourseIdsWithLegacyJson();
 }
 
 interface GraphRepositoryCustom {
     Graph getOrCreate(Long courseId);
-    String nextNodeId(Long courseId);
-    String nextRelationId(Long courseId);
+    /**
+     * 课程内已用节点 id（n 前缀）的最大数字后缀，没有则为 0；仅用于初始化内存序列
+     */
+    long maxNodeIdSuffix(Long courseId);
+
+    /**
+     * 课程内已用关系 id（r 前缀）的最大数字后缀，没有则为 0
+     */
+    long maxRelationIdSuffix(Long courseId);
 }
 
 @Repository
@@ -56,46 +70,18 @@ class GraphRepositoryImpl implements GraphRepositoryCustom {
     }
 
     @Override
-    public String nextNodeId(Long courseId) {
-        Graph g = getOrCreate(courseId);
-        List<Graph.Node> nodes = g.getNodes();
-        int max = 0;
-        if (nodes != null && !nodes.isEmpty()) {
-            max = nodes.stream()
-                    .map(Graph.Node::getId)
-                    .filter(id -> id != null && id.startsWith("n"))
-                    .map(id -> {
-                        try {
-                            return Integer.parseInt(id.substring(1));
-                        } catch (Exception ex) {
-                            return 0;
-                        }
-                    })
-                    .max(Comparator.naturalOrder())
-                    .orElse(0);
-        }
-        return "n" + (max + 1);
+    public long maxNodeIdSuffix(Long courseId) {
+        List<String> ids = em.createQuery("SELECT n.nodeId FROM GraphNode n WHERE n.courseId = :courseId", String.class)
+                .setParameter("courseId", courseId)
+                .getResultList();
+        return IdAllocator.maxSuffix(ids, "n");
     }
 
     @Override
-    public String nextRelationId(Long courseId) {
-        Graph g = getOrCreate(courseId);
-        List<Graph.Relation> rels = g.getRelations();
-        int max = 0;
-        if (rels != null && !rels.isEmpty()) {
-            max = rels.stream()
-                    .map(Graph.Relation::getId)
-                    .filter(id -> id != null && id.startsWith("r"))
-                    .map(id -> {
-                        try {
-                            return Integer.parseInt(id.substring(1));
-                        } catch (Exception ex) {
-                            return 0;
-                        }
-                    })
-                    .max(Comparator.naturalOrder())
-                    .orElse(0);
-        }
-        return "r" + (max + 1);
+    public long maxRelationIdSuffix(Long courseId) {
+        List<String> ids = em.createQuery("SELECT r.relationId FROM GraphRelation r WHERE r.courseId = :courseId", String.class)
+                .setParameter("courseId", courseId)
+                .getResultList();
+        return IdAllocator.maxSuffix(ids, "r");
     }
 }
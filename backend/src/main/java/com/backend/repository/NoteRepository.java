@@ -2,6 +2,9 @@ package com.backend.repository;
 
 import com.backend.entity.Note;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +15,17 @@ public interface NoteRepository extends JpaRepository<Note, String> {
     List<Note> findByCourseId(Long courseId);
     Optional<Note> findByCourseIdAndId(Long courseId, String id);
     long countByCourseIdAndAuthorId(Long courseId, Long authorId);
+
+    /**
+     * 以 prefix 开头的 id（只取 id 列），用于初始化 id 序列
+     */
+    @Query("SELECT n.id FROM Note n WHERE n.id LIKE CONCAT(:prefix, '%')")
+    List<String> findIdsStartingWith(@Param("prefix") String prefix);
+
+    /**
+     * 返回实际删除的行数；并发删除同一笔记时只有一个调用方得到 1
+     */
+    @Modifying
+    @Query("DELETE FROM Note n WHERE n.courseId = :courseId AND n.id = :id")
+    int deleteRow(@Param("courseId") Long courseId, @Param("id") String id);
 }
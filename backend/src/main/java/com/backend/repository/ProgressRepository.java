@@ -1,11 +1,14 @@
 package com.backend.repository;
 
 import com.backend.entity.Progress;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +24,9 @@ public interface ProgressRepository extends JpaRepository<Progress, Long> {
      */
     Optional<Progress> findByUserIdAndCourseIdAndQuizId(Long userId, Long courseId, String quizId);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Progress> findWithLockByUserIdAndCourseIdAndQuizId(Long userId, Long courseId, String quizId);
+
     /**
      * 查找用户在所有课程的所有进度记录
      */
@@ -31,6 +37,11 @@ public interface ProgressRepository extends JpaRepository<Progress, Long> {
      */
     List<Progress> findByUserIdAndCourseIdAndCompletedTrueAndQuizIdIsNotNull(Long userId, Long courseId);
 
+    /**
+     * 查找用户在一组课程已完成的测验记录
+     */
+    List<Progress> findByUserIdAndCourseIdInAndCompletedTrueAndQuizIdIsNotNull(Long userId, Collection<Long> courseIds);
+
     /**
      * 统计用户在特定课程完成的测验数量
      */
@@ -0,0 +1,47 @@
+package com.backend.repository;
+
+import com.backend.entity.ProgressRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProgressRollupRepository extends JpaRepository<ProgressRollup, Long> {
+    Optional<ProgressRollup> findByUserIdAndCourseId(Long userId, Long courseId);
+
+    /**
+     * 累加笔记数，返回更新的行数（汇总行不存在时为 0）
+     */
+    @Modifying
+    @Query("UPDATE ProgressRollup r SET r.noteCount = r.noteCount + :delta WHERE r.userId = :userId AND r.courseId = :courseId")
+    int addNotes(@Param("userId") Long userId, @Param("courseId") Long courseId, @Param("delta") long delta);
+
+    /**
+     * 累加已完成测验数与分数，返回更新的行数（汇总行不存在时为 0）
+     */
+    @Modifying
+    @Query("UPDATE ProgressRollup r SET r.completedQuizzes = r.completedQuizzes + :completed, r.scoreSum = r.scoreSum + :scoreSum, "
+            + "r.scoreCount = r.scoreCount + :scoreCount WHERE r.userId = :userId AND r.courseId = :courseId")
+    int addScores(@Param("userId") Long userId, @Param("courseId") Long courseId, @Param("completed") long completed,
+                  @Param("scoreSum") long scoreSum, @Param("scoreCount") long scoreCount);
+
+    /**
+     * 指定课程的测验数与用户的汇总行，返回 [课程 id, 测验数, ProgressRollup（可能为 null）]；不存在的课程不返回
+     */
+    @Query("SELECT c.id, c.quizCount, r FROM Course c LEFT JOIN ProgressRollup r ON r.courseId = c.id AND r.userId = :userId "
+            + "WHERE c.id IN :courseIds")
+    List<Object[]> findWithQuizCounts(@Param("userId") Long userId, @Param("courseIds") Collection<Long> courseIds);
+
+    /**
+     * 用户有已完成测验的课程及其测验数，返回 [课程 id, 测验数, ProgressRollup]
+     */
+    @Query("SELECT c.id, c.quizCount, r FROM ProgressRollup r JOIN Course c ON c.id = r.courseId "
+            + "WHERE r.userId = :userId AND r.completedQuizzes > 0")
+    List<Object[]> findCompletedWithQuizCounts(@Param("userId") Long userId);
+}
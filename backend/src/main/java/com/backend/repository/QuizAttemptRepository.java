@@ -0,0 +1,41 @@
+package com.backend.repository;
+
+import com.backend.entity.QuizAttempt;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface QuizAttemptRepository extends JpaRepository<QuizAttempt, Long> {
+    /**
+     * 用户在某测验的作答历史，按 id 倒序（即提交时间倒序）的第一页
+     */
+    List<QuizAttempt> findByUserIdAndCourseIdAndQuizIdOrderByIdDesc(Long userId, Long courseId, String quizId, Limit limit);
+
+    /**
+     * 键集分页：id 小于 before 的下一页
+     */
+    List<QuizAttempt> findByUserIdAndCourseIdAndQuizIdAndIdLessThanOrderByIdDesc(
+            Long userId, Long courseId, String quizId, Long before, Limit limit);
+
+    /**
+     * 用户在某测验已写入的作答次数，用于推导下一次作答的序号
+     */
+    long countByUserIdAndCourseIdAndQuizId(Long userId, Long courseId, String quizId);
+
+    /**
+     * 按 10 分一档统计作答次数（100 分单独一档），返回 [档位, 次数]
+     */
+    @Query("SELECT a.score / 10, COUNT(a) FROM QuizAttempt a WHERE a.courseId = :courseId AND a.quizId = :quizId GROUP BY a.score / 10")
+    List<Object[]> countByScoreBucket(@Param("courseId") Long courseId, @Param("quizId") String quizId);
+
+    /**
+     * 作答次数、作答人数、平均分、最高分、最低分
+     */
+    @Query("SELECT COUNT(a), COUNT(DISTINCT a.userId), AVG(a.score), MAX(a.score), MIN(a.score) FROM QuizAttempt a WHERE a.courseId = :courseId AND a.quizId = :quizId")
+    List<Object[]> summarize(@Param("courseId") Long courseId, @Param("quizId") String quizId);
+}
@@ -2,6 +2,9 @@ package com.backend.repository;
 
 import com.backend.entity.Quiz;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +16,23 @@ public interface QuizRepository extends JpaRepository<Quiz, String> {
     Optional<Quiz> findByCourseIdAndId(Long courseId, String id);
     boolean existsByCourseIdAndId(Long courseId, String id);
     long countByCourseId(Long courseId);
+
+    /**
+     * 仍保存旧版 JSON 题目、尚未迁移的测验
+     */
+    @Query("SELECT q.id FROM Quiz q WHERE q.legacyQuestions IS NOT NULL")
+    List<String> findIdsWithLegacyQuestions();
+
+    /**
+     * 以 prefix 开头的 id（只取 id 列），用于初始化 id 序列
+     */
+    @Query("SELECT q.id FROM Quiz q WHERE q.id LIKE CONCAT(:prefix, '%')")
+    List<String> findIdsStartingWith(@Param("prefix") String prefix);
+
+    /**
+     * 题目内容发生变化后递增题目版本
+     */
+    @Modifying
+    @Query("UPDATE Quiz q SET q.questionsVersion = COALESCE(q.questionsVersion, 1) + 1 WHERE q.id = :id")
+    int bumpQuestionsVersion(@Param("id") String id);
 }
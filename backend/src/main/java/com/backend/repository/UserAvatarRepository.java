@@ -0,0 +1,18 @@
+package com.backend.repository;
+
+import com.backend.entity.UserAvatar;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserAvatarRepository extends JpaRepository<UserAvatar, Long> {
+    /**
+     * 加锁读取头像记录，更换头像时串行化同一用户的并发请求
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserAvatar> findWithLockByUserId(Long userId);
+}
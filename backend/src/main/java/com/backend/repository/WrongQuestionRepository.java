@@ -1,18 +1,57 @@
 package com.backend.repository;
 
 import com.backend.entity.WrongQuestion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WrongQuestionRepository extends JpaRepository<WrongQuestion, Long> {
-    List<WrongQuestion> findByUserIdAndCourseIdAndMasteredOrderByAddedAtDesc(Long userId, Long courseId, Boolean mastered);
-    List<WrongQuestion> findByUserIdAndCourseIdOrderByAddedAtDesc(Long userId, Long courseId);
+    /**
+     * 错题列表第一页，按 (addedAt, id) 倒序；mastered 为 null 时不过滤
+     */
+    @Query("SELECT w FROM WrongQuestion w WHERE w.userId = :userId AND w.courseId = :courseId "
+            + "AND (:mastered IS NULL OR w.mastered = :mastered) ORDER BY w.addedAt DESC, w.id DESC")
+    List<WrongQuestion> findPage(@Param("userId") Long userId, @Param("courseId") Long courseId,
+                                 @Param("mastered") Boolean mastered, Limit limit);
+
+    /**
+     * 键集分页：排在 (addedAt, id) 之后的下一页
+     */
+    @Query("SELECT w FROM WrongQuestion w WHERE w.userId = :userId AND w.courseId = :courseId "
+            + "AND (:mastered IS NULL OR w.mastered = :mastered) "
+            + "AND (w.addedAt < :addedAt OR (w.addedAt = :addedAt AND w.id < :id)) ORDER BY w.addedAt DESC, w.id DESC")
+    List<WrongQuestion> findPageAfter(@Param("userId") Long userId, @Param("courseId") Long courseId,
+                                      @Param("mastered") Boolean mastered, @Param("addedAt") LocalDateTime addedAt,
+                                      @Param("id") Long id, Limit limit);
+
+    /**
+     * 待复习队列：按 (user_id, course_id, due_at) 索引范围扫描，取最早到期的前 N 条
+     */
+    List<WrongQuestion> findByUserIdAndCourseIdAndDueAtLessThanEqualOrderByDueAtAsc(Long userId, Long courseId, LocalDateTime now, Limit limit);
     Optional<WrongQuestion> findByUserIdAndQuestionId(Long userId, Long questionId);
-    long countByUserIdAndCourseIdAndMastered(Long userId, Long courseId, Boolean mastered);
+    List<WrongQuestion> findByUserIdAndQuestionIdIn(Long userId, Collection<Long> questionIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<WrongQuestion> findWithLockByUserIdAndQuestionId(Long userId, Long questionId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<WrongQuestion> findWithLockById(Long id);
+
+    /**
+     * 按是否已掌握分组计数，返回 [mastered, 数量]
+     */
+    @Query("SELECT w.mastered, COUNT(w) FROM WrongQuestion w WHERE w.userId = :userId AND w.courseId = :courseId GROUP BY w.mastered")
+    List<Object[]> countGroupByMastered(@Param("userId") Long userId, @Param("courseId") Long courseId);
     void deleteByUserIdAndQuestionId(Long userId, Long questionId);
 }
 
@@ -0,0 +1,154 @@
+package com.backend.service;
+
+import com.backend.entity.StoredBlob;
+import com.backend.repository.StoredBlobRepository;
+import com.backend.storage.BlobStorage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 内容寻址存储的引用计数管理：相同内容只存一份，最后一个引用释放时才删除文件。
+ * 同一 hash 的登记与释放通过分段锁串行，避免释放删除文件的同时又有新引用登记
+ */
+@Service
+@RequiredArgsConstructor
+public class BlobService {
+    private static final int LOCK_STRIPES = 64;
+
+    private final BlobStorage blobStorage;
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock[] locks = IntStream.range(0, LOCK_STRIPES)
+            .mapToObj(i -> new ReentrantLock())
+            .toArray(ReentrantLock[]::new);
+
+    /**
+     * 流式写入并计算 SHA-256，登记一次引用；内容已存在时不再重复落盘
+     */
+    public StoredBlob store(InputStream in) throws IOException {
+        try (BlobStorage.StagedBlob staged = blobStorage.stage(in)) {
+            String hash = staged.sha256();
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                if (!blobStorage.exists(hash)) {
+                    staged.publish();
+                }
+                return transactionTemplate.execute(status -> {
+                    StoredBlob blob = storedBlobRepository.findById(hash)
+                            .orElseGet(() -> StoredBlob.builder().hash(hash).size(staged.size()).refCount(0).build());
+                    blob.setRefCount(blob.getRefCount() + 1);
+                    return storedBlobRepository.save(blob);
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 释放一次引用，最后一个引用释放时删除记录与文件
+     */
+    public void release(String hash) {
+        if (hash == null) return;
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            Boolean orphaned = transactionTemplate.execute(status -> {
+                StoredBlob blob = storedBlobRepository.findById(hash).orElse(null);
+                if (blob == null) return false;
+                if (blob.getRefCount() <= 1) {
+                    storedBlobRepository.delete(blob);
+                    return true;
+                }
+                blob.setRefCount(blob.getRefCount() - 1);
+                storedBlobRepository.save(blob);
+                return false;
+            });
+            if (Boolean.TRUE.equals(orphaned)) {
+                try {
+                    blobStorage.delete(hash);
+                } catch (UncheckedIOException ignored) {
+                    // 记录已删除，残留文件不影响正确性
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Resource load(String hash) {
+        return blobStorage.load(hash);
+    }
+
+    public record Reconciled(int registered, int deleted) {
+    }
+
+    /**
+     * 对齐引用计数记录与存储中的内容（启动时执行）：被引用、内容存在但没有计数记录的 hash 按引用数补登记；
+     * 存储中没有计数记录的内容是上次运行遗留的孤儿，删除。
+     * 逐个 hash 持有分段锁检查，store 在同一把锁内先落盘再登记，因此可与正常上传/释放并发执行
+     *
+     * @param references hash → 引用它的课程文件与头像数量
+     */
+    public Reconciled reconcile(Map<String, Long> references) {
+        int registered = 0;
+        for (Map.Entry<String, Long> e : references.entrySet()) {
+            String hash = e.getKey();
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                if (!blobStorage.exists(hash)) continue;
+                Boolean created = transactionTemplate.execute(status -> {
+                    if (storedBlobRepository.existsById(hash)) return false;
+                    storedBlobRepository.save(StoredBlob.builder().hash(hash).size(sizeOf(hash))
+                            .refCount(e.getValue().intValue()).build());
+                    return true;
+                });
+                if (Boolean.TRUE.equals(created)) registered++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<String> stored = new ArrayList<>();
+        blobStorage.forEachHash(stored::add);
+        int deleted = 0;
+        for (String hash : stored) {
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                if (!storedBlobRepository.existsById(hash)) {
+                    blobStorage.delete(hash);
+                    deleted++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return new Reconciled(registered, deleted);
+    }
+
+    private long sizeOf(String hash) {
+        try {
+            return blobStorage.load(hash).contentLength();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stored blob " + hash, e);
+        }
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+}
@@ -1,15 +1,19 @@
 package com.backend.service;
 
 import com.backend.entity.CourseFile;
+import com.backend.entity.StoredBlob;
 import com.backend.repository.CourseFileRepository;
 import com.backend.repository.CourseRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Service
@@ -22,6 +26,8 @@ public class CourseFileService {
 
     private final CourseFileRepository courseFileRepository;
     private final CourseRepository courseRepository;
+    private final BlobService blobService;
+    private final TransactionTemplate transactionTemplate;
 
     public List<CourseFile> listByCourseId(Long courseId) {
         if (!courseRepository.existsById(courseId)) {
@@ -45,24 +51,32 @@ public class CourseFileService {
         if (file.getSize() > MAX_FILE_SIZE) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "文件大小不能超过 10MB");
         }
-        byte[] data;
-        try {
-            data = file.getBytes();
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "读取文件失败");
-        }
         String filename = file.getOriginalFilename();
         if (filename == null || filename.isBlank()) {
             filename = "file";
         }
+        // 流式写入并按 SHA-256 去重：相同内容只存一份，仅增加引用计数
+        StoredBlob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = blobService.store(in);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "读取文件失败");
+        }
         CourseFile courseFile = CourseFile.builder()
                 .courseId(courseId)
                 .filename(filename)
                 .contentType(contentType)
-                .data(data)
+                .storageKey(blob.getHash())
+                .size(blob.getSize())
+                .etag(blob.getHash())
                 .uploadedBy(userId)
                 .build();
-        return courseFileRepository.save(courseFile);
+        try {
+            return courseFileRepository.save(courseFile);
+        } catch (RuntimeException e) {
+            blobService.release(blob.getHash());
+            throw e;
+        }
     }
 
     public CourseFile getFile(Long courseId, Long fileId) {
@@ -79,6 +93,18 @@ public class CourseFileService {
         if (!isAdmin && file.getUploadedBy() != null && !file.getUploadedBy().equals(userId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "只能删除自己上传的文件");
         }
-        courseFileRepository.delete(file);
+        Integer deleted = transactionTemplate.execute(status -> courseFileRepository.deleteRowById(fileId));
+        // 只有实际删除了记录的请求释放引用（并发删除时另一个请求得到 0）；最后一个引用释放时才删除内容
+        if (deleted != null && deleted == 1) {
+            blobService.release(file.getStorageKey());
+        }
+    }
+
+    public Resource openContent(CourseFile file) {
+        try {
+            return blobService.load(file.getStorageKey());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "文件内容不存在");
+        }
     }
 }
@@ -0,0 +1,167 @@
+package com.backend.service;
+
+import com.backend.entity.ExamSession;
+import com.backend.entity.Quiz;
+import com.backend.entity.User;
+import com.backend.quiz.ExamSessionStore;
+import com.backend.repository.QuizRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 限时考试：开始后在内存会话中自动保存答案，截止时间由服务端强制。
+ * 交卷与到期自动交卷都经 QuizService.gradeAttempt 判分，结果与一次性提交一样进入作答历史、进度与错题本
+ */
+@Service
+public class ExamSessionService {
+    private final ExamSessionStore store;
+    private final QuizService quizService;
+    private final QuizRepository quizRepository;
+    private final CourseService courseService;
+    private final long graceMillis;
+
+    public ExamSessionService(ExamSessionStore store, QuizService quizService, QuizRepository quizRepository,
+                              CourseService courseService,
+                              @Value("${app.exams.grace-ms:2000}") long graceMillis) {
+        this.store = store;
+        this.quizService = quizService;
+        this.quizRepository = quizRepository;
+        this.courseService = courseService;
+        this.graceMillis = graceMillis;
+        store.setExpiryHandler(this::expire);
+    }
+
+    /**
+     * questions 为本次考试的题目（不含答案，抽题/乱序测验为第 attempt 次作答的版本）；限时测验的题目只经会话下发
+     */
+    public record SessionView(String id, String quizId, int attempt, LocalDateTime startedAt,
+                              LocalDateTime deadline, long remainingSeconds, List<Quiz.Question> questions,
+                              Map<String, List<Integer>> answers) {
+    }
+
+    public record SaveResult(LocalDateTime savedAt, long remainingSeconds, int answered) {
+    }
+
+    /**
+     * 开始限时考试；已有进行中的会话时返回该会话（含已保存的答案），不重新计时
+     */
+    public SessionView start(Long courseId, String quizId, User currentUser) {
+        courseService.getCourse(courseId);
+        Quiz quiz = quizRepository.findByCourseIdAndId(courseId, quizId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+        if (quiz.getTimeLimitMinutes() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quiz has no time limit");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ExamSessionStore.LiveSession session = store.open(currentUser.getId(), courseId, quizId,
+                quizService.nextAttempt(currentUser.getId(), courseId, quizId),
+                now, now.plusMinutes(quiz.getTimeLimitMinutes()));
+        return view(session);
+    }
+
+    public SessionView get(Long courseId, String quizId, String sessionId, User currentUser) {
+        return view(owned(courseId, quizId, sessionId, currentUser));
+    }
+
+    /**
+     * 自动保存：覆盖所给题目的答案，只修改内存，由 ExamSessionStore 定期写入快照
+     */
+    public SaveResult save(Long courseId, String quizId, String sessionId, QuizService.AttemptRequest request,
+                           User currentUser) {
+        if (request == null || request.getAnswers() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "answers format invalid");
+        }
+        ExamSessionStore.LiveSession session = owned(courseId, quizId, sessionId, currentUser);
+        if (System.currentTimeMillis() > session.deadlineMillis()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exam deadline has passed");
+        }
+        if (!session.save(request.getAnswers())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exam session already submitted");
+        }
+        return new SaveResult(LocalDateTime.now(), remainingSeconds(session), session.answeredCount());
+    }
+
+    /**
+     * 交卷：请求中的答案先合并到会话（可为空，只提交已保存的答案）。
+     * 截止时间之后（容许 grace-ms 的网络延迟）拒绝，由到期自动交卷处理
+     */
+    public QuizService.AttemptResult submit(Long courseId, String quizId, String sessionId,
+                                            QuizService.AttemptRequest request, User currentUser) {
+        ExamSessionStore.LiveSession session = owned(courseId, quizId, sessionId, currentUser);
+        if (System.currentTimeMillis() > session.deadlineMillis() + graceMillis) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exam deadline has passed");
+        }
+        if (request != null && request.getAnswers() != null && !session.save(request.getAnswers())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exam session already submitted");
+        }
+        if (!session.close()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Exam session already submitted");
+        }
+        return complete(session, ExamSession.Status.SUBMITTED, LocalDateTime.now());
+    }
+
+    /**
+     * 时间轮到期回调：按最后保存的答案自动交卷
+     */
+    private void expire(ExamSessionStore.LiveSession session) {
+        if (!session.close()) return;
+        complete(session, ExamSession.Status.EXPIRED, LocalDateTime.now());
+    }
+
+    private QuizService.AttemptResult complete(ExamSessionStore.LiveSession session, ExamSession.Status status,
+                                               LocalDateTime submittedAt) {
+        Integer score = null;
+        try {
+            QuizService.AttemptResult result = quizService.gradeAttempt(session.courseId(), session.quizId(),
+                    toRequest(session.answers()), session.userId(), session.attempt(), submittedAt);
+            score = result.score();
+            return result;
+        } finally {
+            store.finish(session, status, score, submittedAt);
+        }
+    }
+
+    private static QuizService.AttemptRequest toRequest(Map<String, List<Integer>> answers) {
+        List<QuizService.AttemptRequest.Answer> list = new ArrayList<>(answers.size());
+        answers.forEach((questionId, answer) -> {
+            QuizService.AttemptRequest.Answer a = new QuizService.AttemptRequest.Answer();
+            a.setQuestionId(questionId);
+            a.setAnswer(answer);
+            list.add(a);
+        });
+        QuizService.AttemptRequest request = new QuizService.AttemptRequest();
+        request.setAnswers(list);
+        return request;
+    }
+
+    /**
+     * 进行中且属于当前用户的会话；已结束的会话不再可见（结果见作答历史）
+     */
+    private ExamSessionStore.LiveSession owned(Long courseId, String quizId, String sessionId, User currentUser) {
+        ExamSessionStore.LiveSession session = store.get(sessionId);
+        if (session == null || !Objects.equals(session.userId(), currentUser.getId())
+                || !Objects.equals(session.courseId(), courseId) || !Objects.equals(session.quizId(), quizId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exam session not found");
+        }
+        return session;
+    }
+
+    private static long remainingSeconds(ExamSessionStore.LiveSession session) {
+        return Math.max(0, (session.deadlineMillis() - System.currentTimeMillis()) / 1000);
+    }
+
+    private SessionView view(ExamSessionStore.LiveSession session) {
+        List<Quiz.Question> questions = quizService.variantQuestions(session.courseId(), session.quizId(),
+                session.userId(), session.attempt());
+        return new SessionView(session.id(), session.quizId(), session.attempt(), session.startedAt(),
+                session.deadline(), remainingSeconds(session), questions, session.answers());
+    }
+}
@@ -0,0 +1,207 @@
+package com.backend.service;
+
+import com.backend.entity.Graph;
+import com.backend.graph.GraphIndex;
+import com.backend.graph.GraphWriteLocks;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+
+/**
+ * 批量图谱修改的校验与规划：在课程写锁内基于 GraphIndex 的内存快照逐条应用，
+ * 一次性分配 id，得到最终要删除/更新/新增的节点与关系，不访问数据库。
+ * 应用顺序：删除关系 → 删除节点 → 更新节点 → 新增节点 → 更新关系 → 新增关系。
+ * 新增节点请求中的 id 视为客户端临时引用，同批次关系的 from/to 可以使用该引用
+ */
+class GraphBatchPlan {
+    private final Long courseId;
+    private final GraphWriteLocks idSource;
+
+    private final Map<String, Graph.Node> nodes = new LinkedHashMap<>();
+    private final Map<String, String> labelToId = new HashMap<>();
+    private final Map<String, Graph.Relation> relations = new LinkedHashMap<>();
+    private final Set<String> relationKeys = new HashSet<>();
+    private final Map<String, Integer> references = new HashMap<>();
+
+    final Set<String> deletedRelationIds = new LinkedHashSet<>();
+    final Set<String> deletedNodeIds = new LinkedHashSet<>();
+    final Map<String, Graph.Node> updatedNodes = new LinkedHashMap<>();
+    final List<Graph.Node> createdNodes = new ArrayList<>();
+    final Map<String, Graph.Relation> updatedRelations = new LinkedHashMap<>();
+    final List<Graph.Relation> createdRelations = new ArrayList<>();
+    final Map<String, String> nodeRefs = new LinkedHashMap<>();
+
+    GraphBatchPlan(Long courseId, GraphIndex index, GraphWriteLocks idSource) {
+        this.courseId = courseId;
+        this.idSource = idSource;
+        for (Graph.Node n : index.nodes()) {
+            nodes.put(n.getId(), n);
+            labelToId.put(labelKey(n.getLabel()), n.getId());
+        }
+        for (Graph.Relation r : index.relations()) {
+            relations.put(r.getId(), r);
+            relationKeys.add(relationKey(r));
+            reference(r, 1);
+        }
+    }
+
+    private static String labelKey(String label) {
+        return label == null ? null : label.toLowerCase(Locale.ROOT);
+    }
+
+    private static String relationKey(Graph.Relation r) {
+        return r.getFrom() + '\u0000' + r.getTo() + '\u0000' + labelKey(r.getType());
+    }
+
+    private void reference(Graph.Relation r, int delta) {
+        references.merge(r.getFrom(), delta, Integer::sum);
+        references.merge(r.getTo(), delta, Integer::sum);
+    }
+
+    private static ResponseStatusException error(HttpStatus status, String op, int i, String message) {
+        return new ResponseStatusException(status, op + "[" + i + "]: " + message);
+    }
+
+    private static boolean blank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static void checkWeight(Double weight, String op, int i) {
+        if (weight != null && (weight < 0.0 || weight > 1.0)) {
+            throw error(HttpStatus.BAD_REQUEST, op, i, "weight must be between 0 and 1");
+        }
+    }
+
+    void deleteRelations(List<String> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            Graph.Relation removed = relations.remove(ids.get(i));
+            if (removed == null) throw error(HttpStatus.NOT_FOUND, "relations.delete", i, "Relation not found");
+            relationKeys.remove(relationKey(removed));
+            reference(removed, -1);
+            deletedRelationIds.add(removed.getId());
+        }
+    }
+
+    void deleteNodes(List<String> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            Graph.Node removed = nodes.get(id);
+            if (removed == null) throw error(HttpStatus.NOT_FOUND, "nodes.delete", i, "Node not found");
+            if (references.getOrDefault(id, 0) > 0) {
+                throw error(HttpStatus.CONFLICT, "nodes.delete", i, "Node is referenced by relations");
+            }
+            nodes.remove(id);
+            labelToId.remove(labelKey(removed.getLabel()), id);
+            deletedNodeIds.add(id);
+        }
+    }
+
+    void updateNodes(List<Graph.Node> requests) {
+        for (int i = 0; i < requests.size(); i++) {
+            Graph.Node request = requests.get(i);
+            Graph.Node existing = request.getId() == null ? null : nodes.get(request.getId());
+            if (existing == null) throw error(HttpStatus.NOT_FOUND, "nodes.update", i, "Node not found");
+
+            Graph.Node updated = Graph.Node.builder()
+                    .id(existing.getId())
+                    .label(existing.getLabel())
+                    .type(request.getType() != null ? request.getType() : existing.getType())
+                    .description(request.getDescription() != null ? request.getDescription() : existing.getDescription())
+                    .meta(request.getMeta() != null ? request.getMeta() : existing.getMeta())
+                    .build();
+            String newLabel = request.getLabel();
+            if (!blank(newLabel) && !newLabel.equalsIgnoreCase(existing.getLabel())) {
+                String owner = labelToId.get(labelKey(newLabel));
+                if (owner != null && !owner.equals(existing.getId())) {
+                    throw error(HttpStatus.CONFLICT, "nodes.update", i, "Node with same label exists");
+                }
+                labelToId.remove(labelKey(existing.getLabel()), existing.getId());
+                labelToId.put(labelKey(newLabel), existing.getId());
+                updated.setLabel(newLabel);
+            }
+            nodes.put(updated.getId(), updated);
+            updatedNodes.put(updated.getId(), updated);
+        }
+    }
+
+    void createNodes(List<Graph.Node> requests) {
+        for (int i = 0; i < requests.size(); i++) {
+            Graph.Node request = requests.get(i);
+            if (blank(request.getLabel())) throw error(HttpStatus.BAD_REQUEST, "nodes.create", i, "label is required");
+            if (labelToId.containsKey(labelKey(request.getLabel()))) {
+                throw error(HttpStatus.CONFLICT, "nodes.create", i, "Node with same label exists");
+            }
+            String ref = request.getId();
+            if (ref != null && (nodeRefs.containsKey(ref) || nodes.containsKey(ref))) {
+                throw error(HttpStatus.BAD_REQUEST, "nodes.create", i, "Duplicate or ambiguous node reference " + ref);
+            }
+
+            Graph.Node node = Graph.Node.builder()
+                    .id(idSource.nextNodeId(courseId))
+                    .label(request.getLabel())
+                    .type(request.getType())
+                    .description(request.getDescription())
+                    .meta(request.getMeta())
+                    .build();
+            if (ref != null) nodeRefs.put(ref, node.getId());
+            nodes.put(node.getId(), node);
+            labelToId.put(labelKey(node.getLabel()), node.getId());
+            createdNodes.add(node);
+        }
+    }
+
+    void updateRelations(List<Graph.Relation> requests) {
+        for (int i = 0; i < requests.size(); i++) {
+            Graph.Relation request = requests.get(i);
+            Graph.Relation existing = request.getId() == null ? null : relations.get(request.getId());
+            if (existing == null) throw error(HttpStatus.NOT_FOUND, "relations.update", i, "Relation not found");
+            checkWeight(request.getWeight(), "relations.update", i);
+
+            Graph.Relation updated = Graph.Relation.builder()
+                    .id(existing.getId())
+                    .from(existing.getFrom())
+                    .to(existing.getTo())
+                    .type(request.getType() != null ? request.getType() : existing.getType())
+                    .directed(request.getDirected() != null ? request.getDirected() : existing.getDirected())
+                    .weight(request.getWeight() != null ? request.getWeight() : existing.getWeight())
+                    .meta(request.getMeta() != null ? request.getMeta() : existing.getMeta())
+                    .build();
+            relationKeys.remove(relationKey(existing));
+            relationKeys.add(relationKey(updated));
+            relations.put(updated.getId(), updated);
+            updatedRelations.put(updated.getId(), updated);
+        }
+    }
+
+    void createRelations(List<Graph.Relation> requests) {
+        for (int i = 0; i < requests.size(); i++) {
+            Graph.Relation request = requests.get(i);
+            if (blank(request.getFrom()) || blank(request.getTo()) || blank(request.getType())) {
+                throw error(HttpStatus.BAD_REQUEST, "relations.create", i, "from, to and type are required");
+            }
+            checkWeight(request.getWeight(), "relations.create", i);
+            String from = nodeRefs.getOrDefault(request.getFrom(), request.getFrom());
+            String to = nodeRefs.getOrDefault(request.getTo(), request.getTo());
+            if (!nodes.containsKey(from) || !nodes.containsKey(to)) {
+                throw error(HttpStatus.NOT_FOUND, "relations.create", i, "Source or target node not found");
+            }
+
+            Graph.Relation rel = Graph.Relation.builder()
+                    .from(from)
+                    .to(to)
+                    .type(request.getType())
+                    .directed(request.getDirected() == null ? Boolean.TRUE : request.getDirected())
+                    .weight(request.getWeight())
+                    .meta(request.getMeta())
+                    .build();
+            if (!relationKeys.add(relationKey(rel))) {
+                throw error(HttpStatus.CONFLICT, "relations.create", i, "Relation already exists");
+            }
+            rel.setId(idSource.nextRelationId(courseId));
+            relations.put(rel.getId(), rel);
+            reference(rel, 1);
+            createdRelations.add(rel);
+        }
+    }
+}
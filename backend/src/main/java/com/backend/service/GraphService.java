@@ -1,46 +1,94 @@
 package com.backend.service;
 
 import com.backend.entity.Graph;
-import com.backend.repository.GraphRepository;
+import com.backend.entity.GraphNode;
+import com.backend.entity.GraphRelation;
+import com.backend.graph.GraphIndex;
+import com.backend.graph.GraphIndexCache;
+import com.backend.graph.GraphWriteLocks;
+import com.backend.repository.GraphNodeRepository;
+import com.backend.repository.GraphRelationRepository;
+import lombok.Builder;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
+/**
+ * 知识图谱读写。同一课程的写操作在 GraphWriteLocks 的课程锁内串行执行（不同课程互不影响），
+ * id 由课程内的内存序列分配；跨实例的并发由唯一约束与行版本号兜底
+ */
 @Service
 @RequiredArgsConstructor
 public class GraphService {
+    private static final int MAX_OPTIMISTIC_RETRIES = 3;
+    private static final int MAX_BATCH_OPERATIONS = 20_000;
+
     private final CourseService courseService;
-    private final GraphRepository graphRepository;
+    private final GraphNodeRepository graphNodeRepository;
+    private final GraphRelationRepository graphRelationRepository;
+    private final GraphIndexCache graphIndexCache;
+    private final GraphWriteLocks graphWriteLocks;
+    private final TransactionTemplate transactionTemplate;
 
     private void ensureCourseExists(Long courseId) {
         courseService.getCourse(courseId);
     }
 
-    private Graph getOrCreateGraph(Long courseId) {
+    /**
+     * 在课程写锁内执行写操作。行版本冲突（其他实例同时修改了同一行）时重新读取后重试；
+     * 唯一约束冲突（其他实例抢先写入了相同 id 或 label）时丢弃本地索引与序列并返回 409
+     */
+    private <T> T write(Long courseId, Supplier<T> action) {
         ensureCourseExists(courseId);
-        return graphRepository.getOrCreate(courseId);
+        return graphWriteLocks.write(courseId, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return action.get();
+                } catch (OptimisticLockingFailureException e) {
+                    graphIndexCache.evict(courseId);
+                    if (attempt >= MAX_OPTIMISTIC_RETRIES) {
+                        throw new ResponseStatusException(HttpStatus.CONFLICT, "Concurrent modification, please retry");
+                    }
+                } catch (DataIntegrityViolationException e) {
+                    graphIndexCache.evict(courseId);
+                    graphWriteLocks.resetSequences(courseId);
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "Conflicting graph change, please retry");
+                }
+            }
+        });
+    }
+
+    private GraphIndex index(Long courseId) {
+        return graphIndexCache.get(courseId);
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
     }
 
     // Nodes
 
     public List<Graph.Node> listNodes(Long courseId) {
-        Graph g = getOrCreateGraph(courseId);
-        return Optional.ofNullable(g.getNodes()).orElse(List.of());
+        ensureCourseExists(courseId);
+        return index(courseId).nodes();
     }
 
     public Map<String, Object> getNode(Long courseId, String nodeId) {
-        Graph g = getOrCreateGraph(courseId);
-        Graph.Node node = Optional.ofNullable(g.getNodes()).orElse(List.of()).stream()
-                .filter(n -> Objects.equals(n.getId(), nodeId))
-                .findFirst()
+        ensureCourseExists(courseId);
+        GraphIndex index = index(courseId);
+        Graph.Node node = index.node(nodeId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Node not found"));
 
-        long out = Optional.ofNullable(g.getRelations()).orElse(List.of()).stream().filter(r -> nodeId.equals(r.getFrom())).count();
-        long in = Optional.ofNullable(g.getRelations()).orElse(List.of()).stream().filter(r -> nodeId.equals(r.getTo())).count();
+        long out = index.outDegree(nodeId);
+        long in = index.inDegree(nodeId);
 
         Map<String, Object> resp = new HashMap<>();
         resp.put("node", node);
@@ -54,13 +102,11 @@ public class GraphService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "label is required");
         }
 
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            boolean dup = Optional.ofNullable(g.getNodes()).orElse(List.of()).stream()
-                    .anyMatch(n -> n.getLabel() != null && n.getLabel().equalsIgnoreCase(request.getLabel()));
+        return write(courseId, () -> {
+            boolean dup = index(courseId).nodeIdByLabel(request.getLabel()).isPresent();
             if (dup) throw new ResponseStatusException(HttpStatus.CONFLICT, "Node with same label exists");
 
-            String id = graphRepository.nextNodeId(courseId);
+            String id = graphWriteLocks.nextNodeId(courseId);
 
             Graph.Node node = Graph.Node.builder()
                     .id(id)
@@ -70,25 +116,22 @@ public class GraphService {
                     .meta(request.getMeta())
                     .build();
 
-            if (g.getNodes() == null) g.setNodes(new ArrayList<>());
-            g.getNodes().add(node);
-            graphRepository.save(g);
+            graphNodeRepository.save(GraphNode.from(courseId, node));
+            graphIndexCache.update(courseId, index -> index.putNode(node));
             return node;
-        }
+        });
     }
 
     public Graph.Node updateNode(Long courseId, String nodeId, Graph.Node request) {
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            List<Graph.Node> nodes = Optional.ofNullable(g.getNodes()).orElse(List.of());
-            Graph.Node existing = nodes.stream().filter(n -> Objects.equals(n.getId(), nodeId)).findFirst()
+        return write(courseId, () -> {
+            GraphNode existing = graphNodeRepository.findByCourseIdAndNodeId(courseId, nodeId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Node not found"));
 
             String newLabel = request.getLabel();
             if (newLabel != null && !newLabel.isBlank() && !newLabel.equalsIgnoreCase(existing.getLabel())) {
-                boolean dup = nodes.stream()
-                        .filter(n -> !Objects.equals(n.getId(), nodeId))
-                        .anyMatch(n -> n.getLabel() != null && n.getLabel().equalsIgnoreCase(newLabel));
+                boolean dup = index(courseId).nodeIdByLabel(newLabel)
+                        .filter(id -> !Objects.equals(id, nodeId))
+                        .isPresent();
                 if (dup) throw new ResponseStatusException(HttpStatus.CONFLICT, "Node with same label exists");
                 existing.setLabel(newLabel);
             }
@@ -97,36 +140,30 @@ public class GraphService {
             if (request.getDescription() != null) existing.setDescription(request.getDescription());
             if (request.getMeta() != null) existing.setMeta(request.getMeta());
 
-            graphRepository.save(g);
-            return existing;
-        }
+            Graph.Node updated = graphNodeRepository.save(existing).toNode();
+            graphIndexCache.update(courseId, index -> index.putNode(updated));
+            return updated;
+        });
     }
 
     public void deleteNode(Long courseId, String nodeId) {
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            boolean referenced = Optional.ofNullable(g.getRelations()).orElse(List.of()).stream()
-                    .anyMatch(r -> nodeId.equals(r.getFrom()) || nodeId.equals(r.getTo()));
+        write(courseId, () -> {
+            boolean referenced = index(courseId).isReferenced(nodeId);
             if (referenced) throw new ResponseStatusException(HttpStatus.CONFLICT, "Node is referenced by relations");
 
-            List<Graph.Node> nodes = Optional.ofNullable(g.getNodes()).orElse(List.of());
-            boolean removed = nodes.removeIf(n -> Objects.equals(n.getId(), nodeId));
-            if (!removed) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Node not found");
-
-            graphRepository.save(g);
-        }
+            GraphNode existing = graphNodeRepository.findByCourseIdAndNodeId(courseId, nodeId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Node not found"));
+            graphNodeRepository.delete(existing);
+            graphIndexCache.update(courseId, index -> index.removeNode(nodeId));
+            return null;
+        });
     }
 
     // Relations
 
     public List<Graph.Relation> listRelations(Long courseId, String from, String to, String type) {
-        Graph g = getOrCreateGraph(courseId);
-        List<Graph.Relation> all = Optional.ofNullable(g.getRelations()).orElse(List.of());
-        return all.stream()
-                .filter(r -> from == null || from.isBlank() || from.equals(r.getFrom()))
-                .filter(r -> to == null || to.isBlank() || to.equals(r.getTo()))
-                .filter(r -> type == null || type.isBlank() || type.equalsIgnoreCase(r.getType()))
-                .collect(Collectors.toList());
+        ensureCourseExists(courseId);
+        return index(courseId).relations(blankToNull(from), blankToNull(to), blankToNull(type));
     }
 
     public Graph.Relation createRelation(Long courseId, Graph.Relation request) {
@@ -136,20 +173,16 @@ public class GraphService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from, to and type are required");
         }
 
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            Set<String> nodeIds = Optional.ofNullable(g.getNodes()).orElse(List.of()).stream().map(Graph.Node::getId).collect(Collectors.toSet());
-            if (!nodeIds.contains(request.getFrom()) || !nodeIds.contains(request.getTo())) {
+        return write(courseId, () -> {
+            GraphIndex index = index(courseId);
+            if (!index.containsNode(request.getFrom()) || !index.containsNode(request.getTo())) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Source or target node not found");
             }
 
-            boolean dup = Optional.ofNullable(g.getRelations()).orElse(List.of()).stream()
-                    .anyMatch(r -> Objects.equals(r.getFrom(), request.getFrom())
-                            && Objects.equals(r.getTo(), request.getTo())
-                            && r.getType() != null && r.getType().equalsIgnoreCase(request.getType()));
+            boolean dup = index.hasRelation(request.getFrom(), request.getTo(), request.getType());
             if (dup) throw new ResponseStatusException(HttpStatus.CONFLICT, "Relation already exists");
 
-            String id = graphRepository.nextRelationId(courseId);
+            String id = graphWriteLocks.nextRelationId(courseId);
 
             Graph.Relation rel = Graph.Relation.builder()
                     .id(id)
@@ -161,18 +194,15 @@ public class GraphService {
                     .meta(request.getMeta())
                     .build();
 
-            if (g.getRelations() == null) g.setRelations(new ArrayList<>());
-            g.getRelations().add(rel);
-            graphRepository.save(g);
+            graphRelationRepository.save(GraphRelation.from(courseId, rel));
+            graphIndexCache.update(courseId, idx -> idx.putRelation(rel));
             return rel;
-        }
+        });
     }
 
     public Graph.Relation updateRelation(Long courseId, String relationId, Graph.Relation request) {
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            List<Graph.Relation> rels = Optional.ofNullable(g.getRelations()).orElse(List.of());
-            Graph.Relation existing = rels.stream().filter(r -> Objects.equals(r.getId(), relationId)).findFirst()
+        return write(courseId, () -> {
+            GraphRelation existing = graphRelationRepository.findByCourseIdAndRelationId(courseId, relationId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Relation not found"));
 
             if (request.getType() != null) existing.setType(request.getType());
@@ -184,17 +214,149 @@ public class GraphService {
             }
             if (request.getMeta() != null) existing.setMeta(request.getMeta());
 
-            graphRepository.save(g);
-            return existing;
-        }
+            Graph.Relation updated = graphRelationRepository.save(existing).toRelation();
+            graphIndexCache.update(courseId, index -> index.putRelation(updated));
+            return updated;
+        });
     }
 
     public void deleteRelation(Long courseId, String relationId) {
-        Graph g = getOrCreateGraph(courseId);
-        synchronized (g) {
-            boolean removed = Optional.ofNullable(g.getRelations()).orElse(List.of()).removeIf(r -> Objects.equals(r.getId(), relationId));
-            if (!removed) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Relation not found");
-            graphRepository.save(g);
+        write(courseId, () -> {
+            GraphRelation existing = graphRelationRepository.findByCourseIdAndRelationId(courseId, relationId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Relation not found"));
+            graphRelationRepository.delete(existing);
+            graphIndexCache.update(courseId, index -> index.removeRelation(relationId));
+            return null;
+        });
+    }
+
+    // Batch
+
+    @Data
+    public static class Changes<T> {
+        private List<T> create = new ArrayList<>();
+        private List<T> update = new ArrayList<>();
+        private List<String> delete = new ArrayList<>();
+    }
+
+    @Data
+    public static class BatchRequest {
+        private Changes<Graph.Node> nodes = new Changes<>();
+        private Changes<Graph.Relation> relations = new Changes<>();
+    }
+
+    @Data
+    @Builder
+    public static class BatchResult {
+        /** 新增节点的客户端引用 → 服务端分配的 id */
+        private Map<String, String> nodeIds;
+        private List<Graph.Node> createdNodes;
+        private List<Graph.Relation> createdRelations;
+        private int updatedNodes;
+        private int deletedNodes;
+        private int updatedRelations;
+        private int deletedRelations;
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static int size(Changes<?> changes) {
+        if (changes == null) return 0;
+        return orEmpty(changes.getCreate()).size() + orEmpty(changes.getUpdate()).size() + orEmpty(changes.getDelete()).size();
+    }
+
+    /**
+     * 批量增删改节点与关系：先在内存快照上整体校验并分配 id，任一条失败则整批拒绝；
+     * 通过后在单个事务内批量写库（删除 → 更新 → 新增，各阶段之间 flush 以满足唯一约束），
+     * 提交后一次性更新内存索引
+     */
+    public BatchResult applyBatch(Long courseId, BatchRequest request) {
+        Changes<Graph.Node> nodeChanges = request.getNodes() == null ? new Changes<>() : request.getNodes();
+        Changes<Graph.Relation> relationChanges = request.getRelations() == null ? new Changes<>() : request.getRelations();
+        int total = size(nodeChanges) + size(relationChanges);
+        if (total == 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch is empty");
+        if (total > MAX_BATCH_OPERATIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch exceeds " + MAX_BATCH_OPERATIONS + " operations");
         }
+
+        return write(courseId, () -> {
+            GraphBatchPlan plan = new GraphBatchPlan(courseId, index(courseId), graphWriteLocks);
+            plan.deleteRelations(orEmpty(relationChanges.getDelete()));
+            plan.deleteNodes(orEmpty(nodeChanges.getDelete()));
+            plan.updateNodes(orEmpty(nodeChanges.getUpdate()));
+            plan.createNodes(orEmpty(nodeChanges.getCreate()));
+            plan.updateRelations(orEmpty(relationChanges.getUpdate()));
+            plan.createRelations(orEmpty(relationChanges.getCreate()));
+
+            transactionTemplate.executeWithoutResult(status -> persist(courseId, plan));
+
+            List<Graph.Node> putNodes = new ArrayList<>(plan.updatedNodes.values());
+            putNodes.addAll(plan.createdNodes);
+            List<Graph.Relation> putRelations = new ArrayList<>(plan.updatedRelations.values());
+            putRelations.addAll(plan.createdRelations);
+            graphIndexCache.update(courseId, index ->
+                    index.apply(plan.deletedRelationIds, plan.deletedNodeIds, putNodes, putRelations));
+
+            return BatchResult.builder()
+                    .nodeIds(plan.nodeRefs)
+                    .createdNodes(plan.createdNodes)
+                    .createdRelations(plan.createdRelations)
+                    .updatedNodes(plan.updatedNodes.size())
+                    .deletedNodes(plan.deletedNodeIds.size())
+                    .updatedRelations(plan.updatedRelations.size())
+                    .deletedRelations(plan.deletedRelationIds.size())
+                    .build();
+        });
+    }
+
+    private void persist(Long courseId, GraphBatchPlan plan) {
+        Set<String> touchedRelations = new HashSet<>(plan.deletedRelationIds);
+        touchedRelations.addAll(plan.updatedRelations.keySet());
+        Map<String, GraphRelation> relationRows = new HashMap<>();
+        if (!touchedRelations.isEmpty()) {
+            for (GraphRelation row : graphRelationRepository.findByCourseIdAndRelationIdIn(courseId, touchedRelations)) {
+                relationRows.put(row.getRelationId(), row);
+            }
+        }
+        Set<String> touchedNodes = new HashSet<>(plan.deletedNodeIds);
+        touchedNodes.addAll(plan.updatedNodes.keySet());
+        Map<String, GraphNode> nodeRows = new HashMap<>();
+        if (!touchedNodes.isEmpty()) {
+            for (GraphNode row : graphNodeRepository.findByCourseIdAndNodeIdIn(courseId, touchedNodes)) {
+                nodeRows.put(row.getNodeId(), row);
+            }
+        }
+        // 内存索引与数据库不一致（如其他实例已删除），按并发冲突处理：重载索引后重试
+        if (relationRows.size() != touchedRelations.size() || nodeRows.size() != touchedNodes.size()) {
+            throw new OptimisticLockingFailureException("Graph rows changed concurrently for course " + courseId);
+        }
+
+        if (!plan.deletedRelationIds.isEmpty()) {
+            graphRelationRepository.deleteAllInBatch(plan.deletedRelationIds.stream().map(relationRows::get).toList());
+        }
+        if (!plan.deletedNodeIds.isEmpty()) {
+            graphNodeRepository.deleteAllInBatch(plan.deletedNodeIds.stream().map(nodeRows::get).toList());
+        }
+
+        for (Graph.Node node : plan.updatedNodes.values()) {
+            GraphNode row = nodeRows.get(node.getId());
+            row.setLabel(node.getLabel());
+            row.setType(node.getType());
+            row.setDescription(node.getDescription());
+            row.setMeta(node.getMeta());
+        }
+        for (Graph.Relation rel : plan.updatedRelations.values()) {
+            GraphRelation row = relationRows.get(rel.getId());
+            row.setType(rel.getType());
+            row.setDirected(rel.getDirected());
+            row.setWeight(rel.getWeight());
+            row.setMeta(rel.getMeta());
+        }
+        graphNodeRepository.flush();
+
+        graphNodeRepository.saveAll(plan.createdNodes.stream().map(n -> GraphNode.from(courseId, n)).toList());
+        graphRelationRepository.saveAll(plan.createdRelations.stream().map(r -> GraphRelation.from(courseId, r)).toList());
     }
 }
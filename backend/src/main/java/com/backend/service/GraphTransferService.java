@@ -0,0 +1,588 @@
+package com.backend.service;
+
+import com.backend.entity.Graph;
+import com.backend.entity.GraphNode;
+import com.backend.entity.GraphRelation;
+import com.backend.graph.GraphIndex;
+import com.backend.graph.GraphIndexCache;
+import com.backend.graph.GraphWriteLocks;
+import com.backend.repository.GraphNodeRepository;
+import com.backend.repository.GraphRelationRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.xml.stream.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 知识图谱的流式导入/导出（JSON Lines 与 GraphML），用于在不同环境之间迁移整门课程的图谱。
+ * 导出基于 GraphIndex 的一致快照逐条写出；导入先在锁外解析到临时文件，再在课程写锁内回放，
+ * 每 IMPORT_CHUNK 条写库并清空持久化上下文，回放在同一事务内，失败则全部回滚
+ */
+@Service
+@RequiredArgsConstructor
+public class GraphTransferService {
+    private static final int IMPORT_CHUNK = 500;
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final TypeReference<Map<String, Object>> META = new TypeReference<>() {};
+    private static final String GRAPHML_NS = "http://graphml.graphdrawing.org/xmlns";
+
+    private final CourseService courseService;
+    private final GraphNodeRepository graphNodeRepository;
+    private final GraphRelationRepository graphRelationRepository;
+    private final GraphIndexCache graphIndexCache;
+    private final GraphWriteLocks graphWriteLocks;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public enum Format {
+        JSONL(MediaType.parseMediaType("application/x-ndjson"), "jsonl"),
+        GRAPHML(MediaType.parseMediaType("application/graphml+xml"), "graphml");
+
+        public final MediaType mediaType;
+        public final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public static Format parse(String format) {
+            if (format == null || format.isBlank()) return JSONL;
+            return switch (format.toLowerCase(Locale.ROOT)) {
+                case "jsonl", "ndjson" -> JSONL;
+                case "graphml" -> GRAPHML;
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be jsonl or graphml");
+            };
+        }
+    }
+
+    public record ImportResult(long nodes, long relations) {
+    }
+
+    /**
+     * JSON Lines 中的一行：kind 为 node 或 relation，其余字段与 Graph.Node / Graph.Relation 相同
+     */
+    @Data
+    static class Line {
+        private String kind;
+        private String id;
+        private String label;
+        private String type;
+        private String description;
+        private String from;
+        private String to;
+        private Boolean directed;
+        private Double weight;
+        private Map<String, Object> meta;
+    }
+
+    // ---- 导出 ----
+
+    /**
+     * 在调用时取当前版本的快照（课程不存在时立即抛 404），返回的响应体在写出时逐条序列化
+     */
+    public StreamingResponseBody export(Long courseId, Format format) {
+        courseService.getCourse(courseId);
+        GraphIndex.Snapshot snapshot = graphIndexCache.get(courseId).snapshot();
+        return out -> {
+            switch (format) {
+                case JSONL -> writeJsonLines(snapshot, out);
+                case GRAPHML -> writeGraphMl(courseId, snapshot, out);
+            }
+        };
+    }
+
+    private static void writeJsonLines(GraphIndex.Snapshot snapshot, OutputStream out) throws IOException {
+        try (JsonGenerator gen = JSON.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (Graph.Node n : snapshot.nodes()) {
+                gen.writeStartObject();
+                gen.writeStringField("kind", "node");
+                gen.writeStringField("id", n.getId());
+                gen.writeStringField("label", n.getLabel());
+                if (n.getType() != null) gen.writeStringField("type", n.getType());
+                if (n.getDescription() != null) gen.writeStringField("description", n.getDescription());
+                if (n.getMeta() != null) gen.writeObjectField("meta", n.getMeta());
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+            for (Graph.Relation r : snapshot.relations()) {
+                gen.writeStartObject();
+                gen.writeStringField("kind", "relation");
+                gen.writeStringField("id", r.getId());
+                gen.writeStringField("from", r.getFrom());
+                gen.writeStringField("to", r.getTo());
+                gen.writeStringField("type", r.getType());
+                gen.writeBooleanField("directed", r.getDirected() == null || r.getDirected());
+                if (r.getWeight() != null) gen.writeNumberField("weight", r.getWeight());
+                if (r.getMeta() != null) gen.writeObjectField("meta", r.getMeta());
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+        }
+    }
+
+    private static void writeGraphMl(Long courseId, GraphIndex.Snapshot snapshot, OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("graphml");
+            xml.writeDefaultNamespace(GRAPHML_NS);
+            writeKey(xml, "label", "node", "string");
+            writeKey(xml, "description", "node", "string");
+            writeKey(xml, "type", "all", "string");
+            writeKey(xml, "weight", "edge", "double");
+            writeKey(xml, "meta", "all", "string");
+
+            xml.writeStartElement("graph");
+            xml.writeAttribute("id", "course-" + courseId);
+            xml.writeAttribute("edgedefault", "directed");
+            for (Graph.Node n : snapshot.nodes()) {
+                xml.writeStartElement("node");
+                xml.writeAttribute("id", n.getId());
+                writeData(xml, "label", n.getLabel());
+                writeData(xml, "type", n.getType());
+                writeData(xml, "description", n.getDescription());
+                writeData(xml, "meta", n.getMeta() == null ? null : JSON.writeValueAsString(n.getMeta()));
+                xml.writeEndElement();
+            }
+            for (Graph.Relation r : snapshot.relations()) {
+                xml.writeStartElement("edge");
+                xml.writeAttribute("id", r.getId());
+                xml.writeAttribute("source", r.getFrom());
+                xml.writeAttribute("target", r.getTo());
+                xml.writeAttribute("directed", String.valueOf(r.getDirected() == null || r.getDirected()));
+                writeData(xml, "type", r.getType());
+                writeData(xml, "weight", r.getWeight() == null ? null : r.getWeight().toString());
+                writeData(xml, "meta", r.getMeta() == null ? null : JSON.writeValueAsString(r.getMeta()));
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write GraphML", e);
+        }
+    }
+
+    private static void writeKey(XMLStreamWriter xml, String name, String scope, String type) throws XMLStreamException {
+        xml.writeEmptyElement("key");
+        xml.writeAttribute("id", name);
+        xml.writeAttribute("for", scope);
+        xml.writeAttribute("attr.name", name);
+        xml.writeAttribute("attr.type", type);
+    }
+
+    private static void writeData(XMLStreamWriter xml, String key, String value) throws XMLStreamException {
+        if (value == null) return;
+        xml.writeStartElement("data");
+        xml.writeAttribute("key", key);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    // ---- 导入 ----
+
+    /**
+     * 导入图谱，分两阶段：先在锁外读完请求体，逐条解析并做与课程现有图谱无关的校验（必填字段、weight 范围、
+     * 文件内 id/label 重复），写入临时文件；再在课程写锁与事务内回放临时文件，校验 label 冲突与关系端点并写库。
+     * 文件中的节点 id 仅作为引用（服务端重新分配 id），关系的 from/to 须引用文件中在它之前出现的节点，
+     * 或课程中已有的节点 id。replace 为 true 时先清空课程现有图谱。
+     * 校验规则与批量接口一致，任一条失败则整个导入回滚，错误信息指出出错的行号
+     */
+    public ImportResult importGraph(Long courseId, Format format, InputStream in, boolean replace) {
+        courseService.getCourse(courseId);
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("graph-import-", ".jsonl");
+            try (ImportSpool writer = new ImportSpool(spool)) {
+                switch (format) {
+                    case JSONL -> readJsonLines(in, writer);
+                    case GRAPHML -> readGraphMl(in, writer);
+                }
+            }
+            Path file = spool;
+            return graphWriteLocks.write(courseId, () -> replay(courseId, file, replace));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private ImportResult replay(Long courseId, Path spool, boolean replace) {
+        try {
+            return transactionTemplate.execute(status -> {
+                GraphIndex base;
+                if (replace) {
+                    graphRelationRepository.deleteByCourseId(courseId);
+                    graphNodeRepository.deleteByCourseId(courseId);
+                    base = new GraphIndex(List.of(), List.of());
+                } else {
+                    base = graphIndexCache.get(courseId);
+                }
+                ImportSink sink = new ImportSink(courseId, base);
+                try (MappingIterator<Spooled> records = JSON.readerFor(Spooled.class).readValues(spool.toFile())) {
+                    while (records.hasNext()) {
+                        Spooled s = records.next();
+                        if ("node".equals(s.record().getKind())) {
+                            sink.node(s.line(), s.record());
+                        } else {
+                            sink.relation(s.line(), s.record());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                sink.flush();
+                return new ImportResult(sink.nodeCount, sink.relationCount);
+            });
+        } catch (DataIntegrityViolationException e) {
+            graphWriteLocks.resetSequences(courseId);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Conflicting graph change, please retry");
+        } finally {
+            // 导入不逐条更新内存索引，提交或回滚后统一丢弃，下次读取时从数据库重新加载
+            graphIndexCache.evict(courseId);
+        }
+    }
+
+    private static void readJsonLines(InputStream in, ImportSpool sink) {
+        try (JsonParser parser = JSON.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                long line = parser.currentTokenLocation().getLineNr();
+                if (token != JsonToken.START_OBJECT) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "line " + line + ": expected a JSON object");
+                }
+                Line record = JSON.readValue(parser, Line.class);
+                String kind = record.getKind() == null ? "" : record.getKind().toLowerCase(Locale.ROOT);
+                switch (kind) {
+                    case "node", "relation" -> {
+                        record.setKind(kind);
+                        sink.accept(line, record);
+                    }
+                    default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "line " + line + ": kind must be node or relation");
+                }
+            }
+        } catch (JsonProcessingException e) {
+            String at = e.getLocation() == null ? "" : " at line " + e.getLocation().getLineNr();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed JSON" + at + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readGraphMl(InputStream in, ImportSpool sink) {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader xml = null;
+        try {
+            xml = factory.createXMLStreamReader(in);
+            // key id → attr.name，兼容其他工具导出的 d0/d1 形式的 key
+            Map<String, String> keys = new HashMap<>();
+            boolean directedByDefault = true;
+            Map<String, String> data = new HashMap<>();
+            String element = null;
+            String id = null, source = null, target = null, edgeDirected = null, dataKey = null;
+            StringBuilder text = new StringBuilder();
+            long line = 0;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "key" -> {
+                            String keyId = xml.getAttributeValue(null, "id");
+                            String name = xml.getAttributeValue(null, "attr.name");
+                            if (keyId != null) keys.put(keyId, name != null ? name : keyId);
+                        }
+                        case "graph" -> directedByDefault = !"undirected".equals(xml.getAttributeValue(null, "edgedefault"));
+                        case "node", "edge" -> {
+                            element = xml.getLocalName();
+                            line = xml.getLocation().getLineNumber();
+                            id = xml.getAttributeValue(null, "id");
+                            source = xml.getAttributeValue(null, "source");
+                            target = xml.getAttributeValue(null, "target");
+                            edgeDirected = xml.getAttributeValue(null, "directed");
+                            data.clear();
+                        }
+                        case "data" -> {
+                            dataKey = xml.getAttributeValue(null, "key");
+                            text.setLength(0);
+                        }
+                        default -> {
+                        }
+                    }
+                } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && dataKey != null) {
+                    text.append(xml.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "data" -> {
+                            if (element != null && dataKey != null) {
+                                data.put(keys.getOrDefault(dataKey, dataKey), text.toString());
+                            }
+                            dataKey = null;
+                        }
+                        case "node" -> {
+                            Line record = new Line();
+                            record.setKind("node");
+                            record.setId(id);
+                            record.setLabel(data.get("label"));
+                            record.setType(data.get("type"));
+                            record.setDescription(data.get("description"));
+                            record.setMeta(parseMeta(line, data.get("meta")));
+                            sink.accept(line, record);
+                            element = null;
+                        }
+                        case "edge" -> {
+                            Line record = new Line();
+                            record.setKind("relation");
+                            record.setId(id);
+                            record.setFrom(source);
+                            record.setTo(target);
+                            record.setType(data.get("type"));
+                            record.setDirected(edgeDirected == null ? directedByDefault : Boolean.parseBoolean(edgeDirected));
+                            record.setWeight(parseWeight(line, data.get("weight")));
+                            record.setMeta(parseMeta(line, data.get("meta")));
+                            sink.accept(line, record);
+                            element = null;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            String at = e.getLocation() == null ? "" : " at line " + e.getLocation().getLineNumber();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed GraphML" + at);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> parseMeta(long line, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return JSON.readValue(value, META);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "line " + line + ": meta must be a JSON object");
+        }
+    }
+
+    private static Double parseWeight(long line, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "line " + line + ": weight must be a number");
+        }
+    }
+
+    private static ResponseStatusException lineError(HttpStatus status, long line, String message) {
+        return new ResponseStatusException(status, "line " + line + ": " + message);
+    }
+
+    private static boolean blank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    /**
+     * 临时文件中的一条记录：原始行号与解析后的内容
+     */
+    record Spooled(long line, Line record) {
+    }
+
+    /**
+     * 第一阶段（锁外）：逐条做不依赖课程现有图谱的校验并追加到临时文件。
+     * 内存中只保留文件内出现过的节点 id 与 label key，用于文件内重复检查
+     */
+    private static final class ImportSpool implements AutoCloseable {
+        private final JsonGenerator gen;
+        private final Set<String> fileIds = new HashSet<>();
+        private final Set<String> labelKeys = new HashSet<>();
+
+        ImportSpool(Path file) throws IOException {
+            this.gen = JSON.getFactory().createGenerator(Files.newOutputStream(file));
+        }
+
+        void accept(long line, Line record) {
+            if ("node".equals(record.getKind())) {
+                if (blank(record.getLabel())) throw lineError(HttpStatus.BAD_REQUEST, line, "label is required");
+                if (record.getId() != null && !fileIds.add(record.getId())) {
+                    throw lineError(HttpStatus.BAD_REQUEST, line, "Duplicate node id " + record.getId());
+                }
+                if (!labelKeys.add(GraphNode.labelKey(record.getLabel()))) {
+                    throw lineError(HttpStatus.CONFLICT, line, "Node with same label exists");
+                }
+            } else {
+                if (blank(record.getFrom()) || blank(record.getTo()) || blank(record.getType())) {
+                    throw lineError(HttpStatus.BAD_REQUEST, line, "from, to and type are required");
+                }
+                Double weight = record.getWeight();
+                if (weight != null && (weight < 0.0 || weight > 1.0)) {
+                    throw lineError(HttpStatus.BAD_REQUEST, line, "weight must be between 0 and 1");
+                }
+            }
+            try {
+                JSON.writeValue(gen, new Spooled(line, record));
+                gen.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            gen.close();
+        }
+    }
+
+    /**
+     * 第二阶段（课程写锁与事务内）：回放临时文件，校验与现有图谱的 label 冲突、关系端点与重复关系，
+     * 满 IMPORT_CHUNK 条即写库并清空持久化上下文。内存中只保留文件 id → 服务端 id 的映射与当前块；
+     * 重复关系在每块写库前按块内起点查询数据库（含此前已写入的块）检查
+     */
+    private final class ImportSink {
+        private final Long courseId;
+        private final GraphIndex base;
+        private final Map<String, String> fileIds = new HashMap<>();
+        private final List<GraphNode> nodes = new ArrayList<>();
+        private final List<GraphRelation> relations = new ArrayList<>();
+        private final List<Long> relationLines = new ArrayList<>();
+        long nodeCount;
+        long relationCount;
+
+        ImportSink(Long courseId, GraphIndex base) {
+            this.courseId = courseId;
+            this.base = base;
+        }
+
+        void node(long line, Line record) {
+            if (base.nodeIdByLabel(record.getLabel()).isPresent()) {
+                throw lineError(HttpStatus.CONFLICT, line, "Node with same label exists");
+            }
+            String fileId = record.getId();
+            if (fileId != null && base.containsNode(fileId)) {
+                throw lineError(HttpStatus.BAD_REQUEST, line, "Duplicate or ambiguous node reference " + fileId);
+            }
+            Graph.Node node = Graph.Node.builder()
+                    .id(graphWriteLocks.nextNodeId(courseId))
+                    .label(record.getLabel())
+                    .type(record.getType())
+                    .description(record.getDescription())
+                    .meta(record.getMeta())
+                    .build();
+            if (fileId != null) fileIds.put(fileId, node.getId());
+            nodes.add(GraphNode.from(courseId, node));
+            nodeCount++;
+            if (pending() >= IMPORT_CHUNK) flush();
+        }
+
+        void relation(long line, Line record) {
+            String from = resolve(record.getFrom());
+            String to = resolve(record.getTo());
+            if (from == null || to == null) {
+                throw lineError(HttpStatus.NOT_FOUND, line, "Source or target node not found");
+            }
+            Graph.Relation relation = Graph.Relation.builder()
+                    .id(graphWriteLocks.nextRelationId(courseId))
+                    .from(from)
+                    .to(to)
+                    .type(record.getType())
+                    .directed(record.getDirected() == null ? Boolean.TRUE : record.getDirected())
+                    .weight(record.getWeight())
+                    .meta(record.getMeta())
+                    .build();
+            relations.add(GraphRelation.from(courseId, relation));
+            relationLines.add(line);
+            relationCount++;
+            if (pending() >= IMPORT_CHUNK) flush();
+        }
+
+        private String resolve(String ref) {
+            String id = fileIds.get(ref);
+            if (id != null) return id;
+            return base.containsNode(ref) ? ref : null;
+        }
+
+        private int pending() {
+            return nodes.size() + relations.size();
+        }
+
+        private static String relationKey(String from, String to, String type) {
+            return from + '\u0000' + to + '\u0000' + GraphNode.labelKey(type);
+        }
+
+        /**
+         * 块内关系按起点查出数据库中已有的关系（课程原有的与此前块写入的），再按文件顺序逐条检查重复
+         */
+        private void checkDuplicates() {
+            Set<String> from = new HashSet<>();
+            for (GraphRelation r : relations) from.add(r.getFromNodeId());
+            Set<String> keys = new HashSet<>();
+            for (Object[] row : graphRelationRepository.findKeysFrom(courseId, from)) {
+                keys.add(relationKey((String) row[0], (String) row[1], (String) row[2]));
+            }
+            for (int i = 0; i < relations.size(); i++) {
+                GraphRelation r = relations.get(i);
+                if (!keys.add(relationKey(r.getFromNodeId(), r.getToNodeId(), r.getType()))) {
+                    throw lineError(HttpStatus.CONFLICT, relationLines.get(i), "Relation already exists");
+                }
+            }
+        }
+
+        void flush() {
+            if (pending() == 0) return;
+            graphNodeRepository.saveAll(nodes);
+            if (!relations.isEmpty()) {
+                checkDuplicates();
+                graphRelationRepository.saveAll(relations);
+            }
+            em.flush();
+            em.clear();
+            nodes.clear();
+            relations.clear();
+            relationLines.clear();
+        }
+    }
+}
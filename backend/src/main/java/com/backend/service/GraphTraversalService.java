@@ -0,0 +1,100 @@
+package com.backend.service;
+
+import com.backend.graph.CompactGraph;
+import com.backend.graph.GraphIndexCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 知识图谱的服务端遍历与分析：邻域、最短路径、拓扑学习顺序、连通分量。
+ * 均基于 GraphIndex 按版本缓存的 CompactGraph，不访问数据库
+ */
+@Service
+@RequiredArgsConstructor
+public class GraphTraversalService {
+    public static final String PREREQUISITE = "prerequisite";
+    private static final int MAX_DEPTH = 32;
+
+    private final CourseService courseService;
+    private final GraphIndexCache graphIndexCache;
+
+    public record Neighborhood(String start, int depth, String direction, List<CompactGraph.Visit> nodes) {
+    }
+
+    public record PathResult(String from, String to, boolean reachable, List<String> path, Double cost) {
+    }
+
+    public record Components(int count, List<List<String>> components) {
+    }
+
+    private CompactGraph graph(Long courseId) {
+        courseService.getCourse(courseId); // 若不存在会抛 404
+        return graphIndexCache.get(courseId).compact();
+    }
+
+    private static int node(CompactGraph g, String nodeId) {
+        int idx = g.indexOf(nodeId);
+        if (idx < 0) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Node not found: " + nodeId);
+        return idx;
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+
+    public Neighborhood neighborhood(Long courseId, String start, int depth, String direction, String mode, String type) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "depth must be between 0 and " + MAX_DEPTH);
+        }
+        CompactGraph.Direction dir;
+        try {
+            dir = CompactGraph.Direction.valueOf(direction.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "direction must be out, in or both");
+        }
+        boolean bfs;
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "bfs" -> bfs = true;
+            case "dfs" -> bfs = false;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "mode must be bfs or dfs");
+        }
+
+        CompactGraph g = graph(courseId);
+        int from = node(g, start);
+        List<CompactGraph.Visit> visits = g.neighborhood(from, depth, dir, g.typeId(blankToNull(type)), bfs);
+        return new Neighborhood(start, depth, dir.name().toLowerCase(Locale.ROOT), visits);
+    }
+
+    public PathResult shortestPath(Long courseId, String from, String to, String type) {
+        CompactGraph g = graph(courseId);
+        int source = node(g, from);
+        int target = node(g, to);
+        CompactGraph.Path path = g.shortestPath(source, target, g.typeId(blankToNull(type)));
+        if (path == null) return new PathResult(from, to, false, List.of(), null);
+        return new PathResult(from, to, true, path.nodeIds(), path.cost());
+    }
+
+    /**
+     * 按指定类型（默认 prerequisite）的有向关系给出学习顺序；存在环时返回 409，消息中列出环上的节点
+     */
+    public CompactGraph.TopologicalOrder studyOrder(Long courseId, String type) {
+        CompactGraph g = graph(courseId);
+        String relationType = blankToNull(type) == null ? PREREQUISITE : type;
+        CompactGraph.TopologicalOrder order = g.topologicalOrder(g.typeId(relationType));
+        if (!order.acyclic()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Cycle detected in " + relationType + " relations: " + String.join(" -> ", order.cycle()));
+        }
+        return order;
+    }
+
+    public Components components(Long courseId) {
+        List<List<String>> components = graph(courseId).components();
+        return new Components(components.size(), components);
+    }
+}
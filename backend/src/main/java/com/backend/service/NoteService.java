@@ -1,16 +1,21 @@
 package com.backend.service;
 
 import com.backend.entity.Note;
+import com.backend.entity.ProgressRollup;
 import com.backend.entity.User;
 import com.backend.repository.NoteRepository;
+import com.backend.repository.ProgressRollupRepository;
+import com.backend.util.IdAllocator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +23,9 @@ import java.util.stream.Collectors;
 public class NoteService {
     private final NoteRepository noteRepository;
     private final CourseService courseService;
+    private final IdAllocator idAllocator;
+    private final ProgressRollupRepository progressRollupRepository;
+    private final TransactionTemplate transactionTemplate;
 
     private void ensureCourseExists(Long courseId) {
         courseService.getCourse(courseId);
@@ -52,21 +60,9 @@ public class NoteService {
                 || request.getContent() == null || request.getContent().isBlank()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title and content are required");
         }
-        // generate id like note1, note2 per course (scan existing)
-        List<Note> notes = noteRepository.findByCourseId(courseId);
-        int max = notes.stream()
-                .map(Note::getId)
-                .filter(id -> id != null && id.startsWith("note"))
-                .map(id -> {
-                    try {
-                        return Integer.parseInt(id.substring(4));
-                    } catch (Exception ex) {
-                        return 0;
-                    }
-                })
-                .max(Comparator.naturalOrder())
-                .orElse(0);
-        String id = "note" + (max + 1);
+        // note{n}：id 是全局主键，序列在所有课程间共享
+        String id = "note" + idAllocator.next("note",
+                () -> IdAllocator.maxSuffix(noteRepository.findIdsStartingWith("note"), "note"));
 
         Note note = Note.builder()
                 .id(id)
@@ -77,7 +73,11 @@ public class NoteService {
                 .visibility(request.getVisibility() == null ? "private" : request.getVisibility())
                 .build();
 
-        return noteRepository.save(note);
+        return inTransaction(() -> {
+            Note saved = noteRepository.save(note);
+            addNoteCount(currentUser.getId(), courseId, 1);
+            return saved;
+        });
     }
 
     public Note updateNote(Long courseId, String noteId, Note request, User currentUser) {
@@ -109,6 +109,34 @@ public class NoteService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not note owner or admin");
         }
 
-        noteRepository.deleteById(existing.getId());
+        inTransaction(() -> {
+            // 只有真正删掉这一行的请求才扣减笔记数，并发删除时另一方删除 0 行
+            if (noteRepository.deleteRow(courseId, existing.getId()) == 1) {
+                addNoteCount(existing.getAuthorId(), courseId, -1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 笔记写入与进度汇总的笔记数在同一事务内更新；汇总行被并发创建（唯一约束冲突）时重试一次
+     */
+    private <T> T inTransaction(Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(status -> action.get());
+        }
+    }
+
+    private void addNoteCount(Long userId, Long courseId, long delta) {
+        if (userId == null) return;
+        if (progressRollupRepository.addNotes(userId, courseId, delta) == 0) {
+            progressRollupRepository.save(ProgressRollup.builder()
+                    .userId(userId)
+                    .courseId(courseId)
+                    .noteCount(Math.max(delta, 0))
+                    .build());
+        }
     }
 }
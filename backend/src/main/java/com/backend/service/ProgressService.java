@@ -1,13 +1,16 @@
 package com.backend.service;
 
+import com.backend.entity.Course;
 import com.backend.entity.Progress;
-import com.backend.repository.NoteRepository;
+import com.backend.entity.ProgressRollup;
 import com.backend.repository.ProgressRepository;
-import com.backend.repository.QuizRepository;
+import com.backend.repository.ProgressRollupRepository;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -17,25 +20,31 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ProgressService {
     private final ProgressRepository progressRepository;
-    private final QuizRepository quizRepository;
-    private final NoteRepository noteRepository;
+    private final ProgressRollupRepository progressRollupRepository;
     private final CourseService courseService;
 
     /**
-     * 保存或更新测验进度
+     * 保存或更新测验进度，并把变化累加到进度汇总
      */
     @Transactional
     public Progress saveQuizProgress(Long userId, Long courseId, String quizId, Integer score, Integer totalScore) {
         // 验证课程存在
         courseService.getCourse(courseId);
 
-        Optional<Progress> existing = progressRepository.findByUserIdAndCourseIdAndQuizId(userId, courseId, quizId);
+        Optional<Progress> existing = progressRepository.findWithLockByUserIdAndCourseIdAndQuizId(userId, courseId, quizId);
 
         Progress progress;
+        long completed = 0;
+        long scoreSum = 0;
+        long scoreCount = 0;
         if (existing.isPresent()) {
             progress = existing.get();
             // 只更新更高分的记录
             if (score != null && (progress.getScore() == null || score > progress.getScore())) {
+                boolean counted = progress.getCompleted() && progress.getScore() != null;
+                completed = progress.getCompleted() ? 0 : 1;
+                scoreSum = score - (counted ? progress.getScore() : 0);
+                scoreCount = counted ? 0 : 1;
                 progress.setScore(score);
                 progress.setTotalScore(totalScore);
                 progress.setCompleted(true);
@@ -52,69 +61,55 @@ public class ProgressService {
                     .completedAt(LocalDateTime.now())
                     .lastAccessedAt(LocalDateTime.now())
                     .build();
+            completed = 1;
+            scoreSum = score == null ? 0 : score;
+            scoreCount = score == null ? 0 : 1;
         }
 
-        return progressRepository.save(progress);
+        Progress saved = progressRepository.save(progress);
+        if ((completed != 0 || scoreSum != 0 || scoreCount != 0)
+                && progressRollupRepository.addScores(userId, courseId, completed, scoreSum, scoreCount) == 0) {
+            progressRollupRepository.save(ProgressRollup.builder()
+                    .userId(userId)
+                    .courseId(courseId)
+                    .completedQuizzes(completed)
+                    .scoreSum(scoreSum)
+                    .scoreCount(scoreCount)
+                    .build());
+        }
+        return saved;
     }
 
     /**
-     * 获取用户的总体学习统计（基于选择的课程）
+     * 获取用户的总体学习统计（基于选择的课程）；一次读取各课程的测验数与进度汇总行
      */
     public OverallStatsDTO getOverallStats(Long userId, List<Long> courseIdsParam) {
-        List<Long> courseIds;
-        if (courseIdsParam == null || courseIdsParam.isEmpty()) {
-            // 如果没有指定课程，使用所有有进度的课程
-            List<Progress> allProgress = progressRepository.findByUserId(userId);
-            courseIds = allProgress.stream()
-                    .map(Progress::getCourseId)
-                    .distinct()
-                    .collect(Collectors.toList());
-        } else {
-            courseIds = courseIdsParam;
-        }
-
-        // 只统计指定课程的进度
-        List<Progress> allProgress = progressRepository.findByUserId(userId).stream()
-                .filter(p -> courseIds.contains(p.getCourseId()))
-                .collect(Collectors.toList());
-
-        // 统计各课程的测验数量
-        Map<Long, Long> quizCountsByCourse = new HashMap<>();
-        for (Long courseId : courseIds) {
-            long count = quizRepository.countByCourseId(courseId);
-            quizCountsByCourse.put(courseId, count);
-        }
-
-        // 统计已完成的测验
-        List<Progress> completedQuizzes = allProgress.stream()
-                .filter(p -> p.getCompleted() && p.getQuizId() != null)
-                .collect(Collectors.toList());
-
-        // 统计笔记数量
-        Map<Long, Long> noteCountsByCourse = new HashMap<>();
-        for (Long courseId : courseIds) {
-            long count = noteRepository.countByCourseIdAndAuthorId(courseId, userId);
-            noteCountsByCourse.put(courseId, count);
+        boolean allCourses = courseIdsParam == null || courseIdsParam.isEmpty();
+        // 没有指定课程时，使用所有有已完成测验的课程
+        List<Object[]> rows = allCourses
+                ? progressRollupRepository.findCompletedWithQuizCounts(userId)
+                : progressRollupRepository.findWithQuizCounts(userId, courseIdsParam);
+
+        long totalQuizzes = 0;
+        long completedQuizCount = 0;
+        long scoreSum = 0;
+        long scoreCount = 0;
+        long totalNotes = 0;
+        for (Object[] row : rows) {
+            totalQuizzes += row[1] == null ? 0 : ((Number) row[1]).longValue();
+            ProgressRollup rollup = (ProgressRollup) row[2];
+            if (rollup == null) continue;
+            completedQuizCount += rollup.getCompletedQuizzes();
+            scoreSum += rollup.getScoreSum();
+            scoreCount += rollup.getScoreCount();
+            totalNotes += rollup.getNoteCount();
         }
 
-        // 计算总测验数和已完成测验数
-        long totalQuizzes = quizCountsByCourse.values().stream().mapToLong(Long::longValue).sum();
-        long completedQuizCount = completedQuizzes.size();
-
-        // 计算平均分
-        OptionalDouble avgScore = completedQuizzes.stream()
-                .filter(p -> p.getScore() != null)
-                .mapToInt(Progress::getScore)
-                .average();
-
-        // 计算总笔记数
-        long totalNotes = noteCountsByCourse.values().stream().mapToLong(Long::longValue).sum();
-
         OverallStatsDTO stats = new OverallStatsDTO();
-        stats.setTotalCourses(courseIds.size());
+        stats.setTotalCourses(allCourses ? rows.size() : courseIdsParam.size());
         stats.setTotalQuizzes(totalQuizzes);
         stats.setCompletedQuizzes(completedQuizCount);
-        stats.setAverageScore(avgScore.isPresent() ? (int) Math.round(avgScore.getAsDouble()) : null);
+        stats.setAverageScore(averageScore(scoreSum, scoreCount));
         stats.setTotalNotes(totalNotes);
         stats.setCompletionRate(totalQuizzes > 0 ? (int) Math.round((completedQuizCount * 100.0 / totalQuizzes)) : 0);
 
@@ -122,30 +117,21 @@ public class ProgressService {
     }
 
     /**
-     * 获取用户在某门课程的详细进度
+     * 获取用户在某门课程的详细进度：统计数字来自进度汇总行，列表来自已完成的进度记录
      */
     public CourseProgressDTO getCourseProgress(Long userId, Long courseId) {
         // 验证课程存在
-        courseService.getCourse(courseId);
-
-        List<Progress> progressList = progressRepository.findByUserIdAndCourseId(userId, courseId);
-
-        // 获取该课程的所有测验
-        long totalQuizzes = quizRepository.countByCourseId(courseId);
+        Course course = courseService.getCourse(courseId);
 
-        // 统计已完成的测验
-        List<Progress> completedQuizzes = progressList.stream()
-                .filter(p -> p.getCompleted() && p.getQuizId() != null)
-                .collect(Collectors.toList());
-
-        // 计算平均分
-        OptionalDouble avgScore = completedQuizzes.stream()
-                .filter(p -> p.getScore() != null)
-                .mapToInt(Progress::getScore)
-                .average();
+        ProgressRollup rollup = progressRollupRepository.findByUserIdAndCourseId(userId, courseId).orElse(null);
+        List<Progress> completedQuizzes = progressRepository.findByUserIdAndCourseIdAndCompletedTrueAndQuizIdIsNotNull(userId, courseId);
+        return toCourseProgress(courseId, course.getQuizCount(), rollup, completedQuizzes);
+    }
 
-        // 统计笔记数量
-        long noteCount = noteRepository.countByCourseIdAndAuthorId(courseId, userId);
+    private static CourseProgressDTO toCourseProgress(Long courseId, Long quizCount, ProgressRollup rollup,
+                                                      List<Progress> completedQuizzes) {
+        long totalQuizzes = quizCount == null ? 0 : quizCount;
+        long completedCount = rollup == null ? 0 : rollup.getCompletedQuizzes();
 
         // 获取每个测验的进度详情
         List<QuizProgressDTO> quizProgressList = completedQuizzes.stream()
@@ -163,43 +149,71 @@ public class ProgressService {
         CourseProgressDTO courseProgress = new CourseProgressDTO();
         courseProgress.setCourseId(courseId);
         courseProgress.setTotalQuizzes(totalQuizzes);
-        courseProgress.setCompletedQuizzes(completedQuizzes.size());
-        courseProgress.setAverageScore(avgScore.isPresent() ? (int) Math.round(avgScore.getAsDouble()) : null);
-        courseProgress.setNoteCount(noteCount);
+        courseProgress.setCompletedQuizzes(completedCount);
+        courseProgress.setAverageScore(rollup == null ? null : averageScore(rollup.getScoreSum(), rollup.getScoreCount()));
+        courseProgress.setNoteCount(rollup == null ? 0 : rollup.getNoteCount());
         courseProgress.setQuizProgressList(quizProgressList);
-        courseProgress.setCompletionRate(totalQuizzes > 0 ? (int) Math.round((completedQuizzes.size() * 100.0 / totalQuizzes)) : 0);
+        courseProgress.setCompletionRate(totalQuizzes > 0 ? (int) Math.round((completedCount * 100.0 / totalQuizzes)) : 0);
 
         return courseProgress;
     }
 
+    private static Integer averageScore(long scoreSum, long scoreCount) {
+        return scoreCount > 0 ? (int) Math.round((double) scoreSum / scoreCount) : null;
+    }
+
     /**
-     * 根据课程ID列表获取用户在这些课程的进度列表
+     * 根据课程ID列表获取用户在这些课程的进度列表，按给定顺序返回；有不存在的课程时返回 404。
+     * 不论课程数多少都只有两次查询：测验数与汇总行一次，已完成的进度记录一次
      */
     public List<CourseProgressDTO> getCourseProgressByCourseIds(Long userId, List<Long> courseIds) {
         if (courseIds == null || courseIds.isEmpty()) {
             return java.util.Collections.emptyList();
         }
 
-        return courseIds.stream()
-                .map(courseId -> getCourseProgress(userId, courseId))
-                .collect(Collectors.toList());
+        Map<Long, Object[]> rows = new HashMap<>();
+        for (Object[] row : progressRollupRepository.findWithQuizCounts(userId, courseIds)) {
+            rows.put((Long) row[0], row);
+        }
+        for (Long courseId : courseIds) {
+            if (!rows.containsKey(courseId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Course not found");
+            }
+        }
+        return toCourseProgressList(userId, courseIds, rows);
     }
 
     /**
-     * 获取用户在所有课程的进度列表（已废弃，保留兼容性）
+     * 获取用户在所有课程的进度列表（已废弃，保留兼容性）；只包含有已完成测验且仍存在的课程
      */
     @Deprecated
     public List<CourseProgressDTO> getAllCourseProgress(Long userId) {
-        List<Progress> allProgress = progressRepository.findByUserId(userId);
-
-        // 获取所有课程ID
-        Set<Long> courseIds = allProgress.stream()
-                .map(Progress::getCourseId)
-                .collect(Collectors.toSet());
+        Map<Long, Object[]> rows = new LinkedHashMap<>();
+        for (Object[] row : progressRollupRepository.findCompletedWithQuizCounts(userId)) {
+            rows.put((Long) row[0], row);
+        }
+        if (rows.isEmpty()) return new ArrayList<>();
+        return toCourseProgressList(userId, new ArrayList<>(rows.keySet()), rows);
+    }
 
-        return courseIds.stream()
-                .map(courseId -> getCourseProgress(userId, courseId))
-                .collect(Collectors.toList());
+    /**
+     * 一次查询取出这些课程的已完成进度记录，按课程分组后与汇总行组装
+     *
+     * @param rows 课程 id → [课程 id, 测验数, ProgressRollup]
+     */
+    private List<CourseProgressDTO> toCourseProgressList(Long userId, List<Long> courseIds, Map<Long, Object[]> rows) {
+        Map<Long, List<Progress>> completedByCourse = new HashMap<>();
+        for (Progress p : progressRepository.findByUserIdAndCourseIdInAndCompletedTrueAndQuizIdIsNotNull(userId, rows.keySet())) {
+            completedByCourse.computeIfAbsent(p.getCourseId(), k -> new ArrayList<>()).add(p);
+        }
+        List<CourseProgressDTO> result = new ArrayList<>(courseIds.size());
+        for (Long courseId : courseIds) {
+            Object[] row = rows.get(courseId);
+            Long quizCount = row[1] == null ? null : ((Number) row[1]).longValue();
+            result.add(toCourseProgress(courseId, quizCount, (ProgressRollup) row[2],
+                    completedByCourse.getOrDefault(courseId, List.of())));
+        }
+        return result;
     }
 
     // DTOs
@@ -0,0 +1,120 @@
+package com.backend.service;
+
+import com.backend.entity.Question;
+import com.backend.entity.Quiz;
+import com.backend.entity.QuizAttempt;
+import com.backend.quiz.AttemptOutcome;
+import com.backend.quiz.QuestionAnalytics;
+import com.backend.repository.QuestionRepository;
+import com.backend.repository.QuizAttemptRepository;
+import com.backend.repository.QuizRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测验作答历史查询：个人历史按 id 键集分页，成绩分布为按索引 (course_id, quiz_id, score) 的分组聚合，
+ * 逐题统计直接读取 QuestionAnalytics 的内存计数器
+ */
+@Service
+@RequiredArgsConstructor
+public class QuizAttemptService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int BUCKETS = 11;
+
+    private final QuizAttemptRepository quizAttemptRepository;
+    private final QuizRepository quizRepository;
+    private final QuestionRepository questionRepository;
+    private final CourseService courseService;
+    private final QuestionAnalytics questionAnalytics;
+
+    public record QuestionOutcome(int index, boolean answered, boolean correct, List<Integer> chosen) {
+    }
+
+    public record AttemptView(Long id, int score, int total, LocalDateTime submittedAt, List<QuestionOutcome> questions) {
+    }
+
+    public record AttemptPage(List<AttemptView> items, Long nextBefore) {
+    }
+
+    /**
+     * buckets[i] 为 [10i, 10i+9] 分的作答次数，buckets[10] 为满分
+     */
+    public record Distribution(long attempts, long users, Double averageScore, Integer maxScore, Integer minScore,
+                               long[] buckets) {
+    }
+
+    private void ensureQuizExists(Long courseId, String quizId) {
+        courseService.getCourse(courseId);
+        if (!quizRepository.existsByCourseIdAndId(courseId, quizId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found");
+        }
+    }
+
+    /**
+     * 用户在某测验的作答历史，按提交时间倒序；before 为上一页返回的 nextBefore
+     */
+    public AttemptPage listAttempts(Long userId, Long courseId, String quizId, Long before, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        ensureQuizExists(courseId, quizId);
+        List<QuizAttempt> rows = before == null
+                ? quizAttemptRepository.findByUserIdAndCourseIdAndQuizIdOrderByIdDesc(userId, courseId, quizId, Limit.of(size))
+                : quizAttemptRepository.findByUserIdAndCourseIdAndQuizIdAndIdLessThanOrderByIdDesc(
+                        userId, courseId, quizId, before, Limit.of(size));
+        List<AttemptView> items = rows.stream().map(QuizAttemptService::view).toList();
+        Long next = rows.size() < size ? null : rows.get(rows.size() - 1).getId();
+        return new AttemptPage(items, next);
+    }
+
+    public Distribution distribution(Long courseId, String quizId) {
+        ensureQuizExists(courseId, quizId);
+        long[] buckets = new long[BUCKETS];
+        for (Object[] row : quizAttemptRepository.countByScoreBucket(courseId, quizId)) {
+            int bucket = Math.min(Math.max(((Number) row[0]).intValue(), 0), BUCKETS - 1);
+            buckets[bucket] += ((Number) row[1]).longValue();
+        }
+        Object[] summary = quizAttemptRepository.summarize(courseId, quizId).get(0);
+        return new Distribution(
+                ((Number) summary[0]).longValue(),
+                ((Number) summary[1]).longValue(),
+                summary[2] == null ? null : ((Number) summary[2]).doubleValue(),
+                summary[3] == null ? null : ((Number) summary[3]).intValue(),
+                summary[4] == null ? null : ((Number) summary[4]).intValue(),
+                buckets);
+    }
+
+    /**
+     * 逐题统计：难度（答对率）、区分度（点二列相关）与各选项被选次数，只统计当前版本测验的作答
+     */
+    public QuestionAnalytics.Snapshot analytics(Long courseId, String quizId) {
+        courseService.getCourse(courseId);
+        Quiz quiz = quizRepository.findByCourseIdAndId(courseId, quizId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+        quiz.setQuestions(questionRepository.findByQuizIdOrderByOrderIndexAsc(quizId).stream()
+                .map(Question::toQuizQuestion)
+                .toList());
+        return questionAnalytics.snapshot(quiz);
+    }
+
+    private static AttemptView view(QuizAttempt a) {
+        AttemptOutcome outcome = a.outcome();
+        long[] masks = outcome.chosenMasks();
+        List<QuestionOutcome> questions = new ArrayList<>(outcome.questionCount());
+        for (int i = 0; i < outcome.questionCount(); i++) {
+            List<Integer> chosen = new ArrayList<>(Long.bitCount(masks[i]));
+            for (long m = masks[i]; m != 0; m &= m - 1) {
+                chosen.add(Long.numberOfTrailingZeros(m));
+            }
+            questions.add(new QuestionOutcome(i, outcome.isAnswered(i), outcome.isCorrect(i), chosen));
+        }
+        return new AttemptView(a.getId(), a.getScore(), a.getTotal(), a.getSubmittedAt(), questions);
+    }
+}
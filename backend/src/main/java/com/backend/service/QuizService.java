@@ -3,15 +3,27 @@ package com.backend.service;
 import com.backend.entity.Question;
 import com.backend.entity.Quiz;
 import com.backend.entity.User;
+import com.backend.quiz.AnswerKey;
+import com.backend.quiz.AnswerKeyCache;
+import com.backend.quiz.AttemptCounter;
+import com.backend.quiz.AttemptEvent;
+import com.backend.quiz.AttemptEventPipeline;
+import com.backend.quiz.QuestionAnalytics;
+import com.backend.quiz.QuizVariant;
+import com.backend.quiz.StudentViewCache;
+import com.backend.repository.CourseRepository;
 import com.backend.repository.QuestionRepository;
+import com.backend.repository.QuizAttemptRepository;
 import com.backend.repository.QuizRepository;
+import com.backend.util.IdAllocator;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -20,10 +32,20 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class QuizService {
+    private static final String TIMED_QUIZ_MESSAGE = "Timed quiz must be taken through an exam session";
+
     private final QuizRepository quizRepository;
     private final QuestionRepository questionRepository;
+    private final CourseRepository courseRepository;
     private final CourseService courseService;
-    private final ProgressService progressService;
+    private final AnswerKeyCache answerKeyCache;
+    private final AttemptEventPipeline attemptEventPipeline;
+    private final QuestionAnalytics questionAnalytics;
+    private final TransactionTemplate transactionTemplate;
+    private final IdAllocator idAllocator;
+    private final StudentViewCache studentViewCache;
+    private final QuizAttemptRepository quizAttemptRepository;
+    private final AttemptCounter attemptCounter;
 
     private void ensureCourseExists(Long courseId) {
         courseService.getCourse(courseId);
@@ -32,7 +54,7 @@ public class QuizService {
     // 列表：对非作者/非 ADMIN 隐藏答案
     public List<Quiz> listQuizzes(Long courseId, User currentUser) {
         ensureCourseExists(courseId);
-        List<Quiz> all = quizRepository.findByCourseId(courseId);
+        List<Quiz> all = withQuestions(quizRepository.findByCourseId(courseId));
         boolean isAdmin = currentUser != null && currentUser.getRole() == User.Role.ADMIN;
         return all.stream()
                 .map(q -> maskAnswersIfNeeded(q, currentUser, isAdmin))
@@ -43,15 +65,96 @@ public class QuizService {
         ensureCourseExists(courseId);
         Quiz quiz = quizRepository.findByCourseIdAndId(courseId, quizId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+        withQuestions(List.of(quiz));
         boolean isAdmin = currentUser != null && currentUser.getRole() == User.Role.ADMIN;
         return maskAnswersIfNeeded(quiz, currentUser, isAdmin);
     }
 
+    private static boolean canSeeAnswers(Long authorId, User currentUser) {
+        return currentUser != null
+                && (currentUser.getRole() == User.Role.ADMIN || Objects.equals(authorId, currentUser.getId()));
+    }
+
+    /**
+     * 普通用户的测验列表 JSON：拼接各测验缓存的学生视图，未缓存的测验一次性加载题目后构建。
+     * 请求者能看到其中任一测验的答案（ADMIN 或测验作者）时返回 null，由 listQuizzes 给出完整视图
+     */
+    public byte[] listStudentViews(Long courseId, User currentUser) {
+        ensureCourseExists(courseId);
+        long version = studentViewCache.version();
+        List<Quiz> quizzes = quizRepository.findByCourseId(courseId);
+        for (Quiz quiz : quizzes) {
+            if (canSeeAnswers(quiz.getAuthorId(), currentUser)) return null;
+        }
+        List<Quiz> misses = quizzes.stream()
+                .filter(q -> studentViewCache.cached(q.getId()) == null)
+                .toList();
+        withQuestions(misses);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        for (int i = 0; i < quizzes.size(); i++) {
+            Quiz quiz = quizzes.get(i);
+            StudentViewCache.StudentView view = studentViewCache.cached(quiz.getId());
+            if (view == null || quiz.getQuestions() != null) {
+                // 本次加载过题目的测验按本次数据构建（期间缓存可能已被其他请求填充或失效）
+                view = StudentViewCache.build(quiz);
+                studentViewCache.put(quiz.getId(), view, version);
+            }
+            if (i > 0) out.write(',');
+            out.writeBytes(view.json());
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * 普通用户的测验详情 JSON（缓存的学生视图）；请求者为 ADMIN 或测验作者时返回 null，由 getQuiz 给出完整视图
+     */
+    public byte[] getStudentView(Long courseId, String quizId, User currentUser) {
+        ensureCourseExists(courseId);
+        StudentViewCache.StudentView view = studentView(courseId, quizId);
+        return canSeeAnswers(view.authorId(), currentUser) ? null : view.json();
+    }
+
+    private StudentViewCache.StudentView studentView(Long courseId, String quizId) {
+        long version = studentViewCache.version();
+        StudentViewCache.StudentView view = studentViewCache.cached(quizId);
+        if (view == null) {
+            Quiz quiz = quizRepository.findById(quizId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+            view = StudentViewCache.build(withQuestions(List.of(quiz)).get(0));
+            studentViewCache.put(quizId, view, version);
+        }
+        if (!Objects.equals(view.courseId(), courseId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found");
+        }
+        return view;
+    }
+
+    /**
+     * 用一次查询加载这些测验的题目行并填充 questions（选项/答案集合按批加载）
+     */
+    private List<Quiz> withQuestions(List<Quiz> quizzes) {
+        if (quizzes.isEmpty()) return quizzes;
+        Map<String, List<Quiz.Question>> byQuiz = new HashMap<>();
+        List<String> ids = quizzes.stream().map(Quiz::getId).toList();
+        for (Question row : questionRepository.findByQuizIdInOrderByQuizIdAscOrderIndexAsc(ids)) {
+            byQuiz.computeIfAbsent(row.getQuizId(), k -> new ArrayList<>()).add(row.toQuizQuestion());
+        }
+        for (Quiz quiz : quizzes) {
+            quiz.setQuestions(byQuiz.getOrDefault(quiz.getId(), new ArrayList<>()));
+        }
+        return quizzes;
+    }
+
     private Quiz maskAnswersIfNeeded(Quiz quiz, User currentUser, boolean isAdmin) {
         boolean isOwner = currentUser != null && Objects.equals(quiz.getAuthorId(), currentUser.getId());
         if (isAdmin || isOwner) return quiz;
-        // deep copy with answers nulled
-        List<Quiz.Question> masked = Optional.ofNullable(quiz.getQuestions()).orElse(List.of()).stream()
+        // deep copy with answers nulled；限时测验与抽题/乱序测验的题目只经考试会话或 /variant 下发
+        List<Quiz.Question> source = StudentViewCache.hidesQuestions(quiz) ? List.of()
+                : Optional.ofNullable(quiz.getQuestions()).orElse(List.of());
+        List<Quiz.Question> masked = source.stream()
                 .map(q -> Quiz.Question.builder()
                         .id(q.getId())
                         .type(q.getType())
@@ -65,87 +168,108 @@ public class QuizService {
                 .courseId(quiz.getCourseId())
                 .title(quiz.getTitle())
                 .questions(masked)
+                .timeLimitMinutes(quiz.getTimeLimitMinutes())
+                .drawCount(quiz.getDrawCount())
+                .shuffle(quiz.getShuffle())
                 .authorId(quiz.getAuthorId())
                 .createdAt(quiz.getCreatedAt())
                 .updatedAt(quiz.getUpdatedAt())
                 .build();
     }
 
+    /**
+     * 按顺序重新分配题目 id：{quizId}-{序号}
+     */
+    private static List<Quiz.Question> assignQuestionIds(String quizId, List<Quiz.Question> questions) {
+        AtomicInteger idx = new AtomicInteger(1);
+        return questions.stream()
+                .map(q -> Quiz.Question.builder()
+                        .id(quizId + "-" + idx.getAndIncrement())
+                        .type(q.getType())
+                        .question(q.getQuestion())
+                        .options(q.getOptions())
+                        .answer(q.getAnswer())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
     public Quiz createQuiz(Long courseId, Quiz request, User currentUser) {
         ensureCourseExists(courseId);
         if (request.getTitle() == null || request.getTitle().isBlank()
                 || request.getQuestions() == null || request.getQuestions().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title and questions are required");
         }
+        if (request.getTimeLimitMinutes() != null && request.getTimeLimitMinutes() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeLimitMinutes must be positive");
+        }
+        if (request.getDrawCount() != null
+                && (request.getDrawCount() < 1 || request.getDrawCount() > request.getQuestions().size())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "drawCount must be between 1 and the number of questions");
+        }
 
-        // generate quiz id q{n}
-        List<Quiz> existing = quizRepository.findByCourseId(courseId);
-        int max = existing.stream()
-                .map(Quiz::getId)
-                .filter(Objects::nonNull)
-                .filter(id -> id.startsWith("q"))
-                .map(id -> {
-                    try { return Integer.parseInt(id.substring(1)); } catch (Exception e) { return 0; }
-                })
-                .max(Comparator.naturalOrder())
-                .orElse(0);
-        String id = "q" + (max + 1);
-
-        // assign question ids
-        AtomicInteger idx = new AtomicInteger(1);
-        List<Quiz.Question> qs = request.getQuestions().stream()
-                .map(q -> {
-                    Quiz.Question nq = Quiz.Question.builder()
-                            .id(id + "-" + idx.getAndIncrement())
-                            .type(q.getType())
-                            .question(q.getQuestion())
-                            .options(q.getOptions())
-                            .answer(q.getAnswer())
-                            .build();
-                    return nq;
-                })
-                .collect(Collectors.toList());
+        // q{n}：id 是全局主键，序列在所有课程间共享
+        String id = "q" + idAllocator.next("quiz",
+                () -> IdAllocator.maxSuffix(quizRepository.findIdsStartingWith("q"), "q"));
+
+        List<Quiz.Question> qs = assignQuestionIds(id, request.getQuestions());
 
         Quiz quiz = Quiz.builder()
                 .id(id)
                 .courseId(courseId)
                 .title(request.getTitle())
-                .questions(qs)
+                .timeLimitMinutes(request.getTimeLimitMinutes())
+                .drawCount(request.getDrawCount())
+                .shuffle(request.getShuffle())
                 .authorId(currentUser.getId())
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        Quiz savedQuiz = quizRepository.save(quiz);
-
-        // 同步创建Question实体
-        syncQuestionsToEntity(courseId, id, qs);
-
+        // 测验与题目行在同一事务内写入，题目行按 JDBC batch 插入
+        Quiz savedQuiz = transactionTemplate.execute(status -> {
+            Quiz saved = quizRepository.save(quiz);
+            List<Question> rows = new ArrayList<>(qs.size());
+            for (int i = 0; i < qs.size(); i++) {
+                rows.add(Question.from(courseId, id, i, qs.get(i)));
+            }
+            questionRepository.saveAll(rows);
+            courseRepository.addQuizCount(courseId, 1);
+            return saved;
+        });
+        answerKeyCache.evict(id);
+        studentViewCache.evict(id);
+
+        savedQuiz.setQuestions(qs);
         return savedQuiz;
     }
 
     /**
-     * 将Quiz中的questions同步到Question实体
+     * 将题目列表与已有题目行按题目 id 对比：只更新有变化的行，新增的批量插入，多余的删除。
+     * 未变化的题目不产生任何写入，题目行 id 保持不变（错题本中的引用仍然有效）。
+     * 返回是否有题目发生变化
      */
-    @Transactional
-    private void syncQuestionsToEntity(Long courseId, String quizId, List<Quiz.Question> questions) {
-        // 删除旧的Question实体
-        questionRepository.deleteByQuizId(quizId);
+    private boolean syncQuestions(Long courseId, String quizId, List<Quiz.Question> questions) {
+        Map<String, Question> current = new HashMap<>();
+        List<Question> stale = new ArrayList<>();
+        for (Question row : questionRepository.findByQuizIdOrderByOrderIndexAsc(quizId)) {
+            if (current.putIfAbsent(row.getOriginalId(), row) != null) stale.add(row);
+        }
 
-        // 创建新的Question实体
+        boolean changed = false;
+        List<Question> inserts = new ArrayList<>();
         for (int i = 0; i < questions.size(); i++) {
             Quiz.Question q = questions.get(i);
-            Question question = Question.builder()
-                    .quizId(quizId)
-                    .courseId(courseId)
-                    .originalId(q.getId()) // 保存原始ID
-                    .type(q.getType())
-                    .question(q.getQuestion())
-                    .options(q.getOptions())
-                    .answer(q.getAnswer())
-                    .orderIndex(i)
-                    .build();
-            questionRepository.save(question);
+            Question row = current.remove(q.getId());
+            if (row == null) {
+                inserts.add(Question.from(courseId, quizId, i, q));
+            } else if (row.apply(i, q)) {
+                // 已托管的行在提交时按 JDBC batch 更新
+                changed = true;
+            }
         }
+        stale.addAll(current.values());
+        if (!stale.isEmpty()) questionRepository.deleteAll(stale);
+        if (!inserts.isEmpty()) questionRepository.saveAll(inserts);
+        return changed || !stale.isEmpty() || !inserts.isEmpty();
     }
 
     public Quiz updateQuiz(Long courseId, String quizId, Quiz request, User currentUser) {
@@ -160,25 +284,41 @@ public class QuizService {
         }
 
         if (request.getTitle() != null && !request.getTitle().isBlank()) existing.setTitle(request.getTitle());
-
-        if (request.getQuestions() != null) {
-            AtomicInteger idx = new AtomicInteger(1);
-            List<Quiz.Question> qs = request.getQuestions().stream()
-                    .map(q -> Quiz.Question.builder()
-                            .id(quizId + "-" + idx.getAndIncrement())
-                            .type(q.getType())
-                            .question(q.getQuestion())
-                            .options(q.getOptions())
-                            .answer(q.getAnswer())
-                            .build())
-                    .collect(Collectors.toList());
-            existing.setQuestions(qs);
-
-            // 同步更新Question实体
-            syncQuestionsToEntity(courseId, quizId, qs);
+        // 0 表示取消限时
+        if (request.getTimeLimitMinutes() != null) {
+            if (request.getTimeLimitMinutes() < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeLimitMinutes must not be negative");
+            }
+            existing.setTimeLimitMinutes(request.getTimeLimitMinutes() == 0 ? null : request.getTimeLimitMinutes());
         }
-
-        return quizRepository.save(existing);
+        if (request.getShuffle() != null) existing.setShuffle(request.getShuffle());
+
+        List<Quiz.Question> qs = request.getQuestions() == null ? null : assignQuestionIds(quizId, request.getQuestions());
+        // 0 表示取消抽题
+        if (request.getDrawCount() != null) {
+            long questionCount = qs != null ? qs.size() : questionRepository.countByQuizId(quizId);
+            if (request.getDrawCount() < 0 || request.getDrawCount() > questionCount) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "drawCount must be between 1 and the number of questions");
+            }
+            existing.setDrawCount(request.getDrawCount() == 0 ? null : request.getDrawCount());
+        }
+        Quiz saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                // 题目有变化时递增题目版本（逐题统计以此区分测验版本）；只改题目时 quiz 行其余字段不变，显式更新修改时间
+                if (qs != null && syncQuestions(courseId, quizId, qs)) {
+                    quizRepository.bumpQuestionsVersion(quizId);
+                    existing.setUpdatedAt(LocalDateTime.now());
+                }
+                return quizRepository.save(existing);
+            });
+        } finally {
+            // 提交后再丢弃缓存，避免并发请求在提交前重新编译出旧答案表
+            answerKeyCache.evict(quizId);
+            studentViewCache.evict(quizId);
+            questionAnalytics.evict(courseId, quizId);
+        }
+        return withQuestions(List.of(saved)).get(0);
     }
 
     public void deleteQuiz(Long courseId, String quizId, User currentUser) {
@@ -192,133 +332,165 @@ public class QuizService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not quiz owner or admin");
         }
 
-        quizRepository.deleteById(existing.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            quizRepository.deleteById(existing.getId());
+            courseRepository.addQuizCount(courseId, -1);
+        });
+        answerKeyCache.evict(quizId);
+        studentViewCache.evict(quizId);
+        questionAnalytics.evict(courseId, quizId);
+        attemptCounter.evictQuiz(quizId);
     }
 
-    // Attempts: simple auto grading
-    public Map<String, Object> submitAttempt(Long courseId, String quizId, AttemptRequest request, User currentUser) {
+    /**
+     * 编译后的答案表（命中缓存时不访问数据库）；未命中时加载题目行并编译
+     */
+    private AnswerKey answerKey(Long courseId, String quizId) {
+        AnswerKey key = answerKeyCache.get(quizId, () -> compileAnswerKey(courseId, quizId));
+        if (!Objects.equals(key.courseId(), courseId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found");
+        }
+        return key;
+    }
+
+    private AnswerKey compileAnswerKey(Long courseId, String quizId) {
+        // 选项/答案集合为延迟加载，在事务内读完（到期自动交卷时不在请求线程上）
+        return transactionTemplate.execute(status -> {
+            Quiz quiz = quizRepository.findById(quizId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+            return new AnswerKey(quiz.getCourseId(), questionRepository.findByQuizIdOrderByOrderIndexAsc(quizId),
+                    quiz.getDrawCount(), Boolean.TRUE.equals(quiz.getShuffle()), quiz.getTimeLimitMinutes() != null,
+                    Objects.requireNonNullElse(quiz.getQuestionsVersion(), 1));
+        });
+    }
+
+    // Attempts: auto grading against the compiled answer key
+    public AttemptResult submitAttempt(Long courseId, String quizId, AttemptRequest request, User currentUser) {
         ensureCourseExists(courseId);
-        Quiz quiz = quizRepository.findByCourseIdAndId(courseId, quizId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Quiz not found"));
+        if (answerKey(courseId, quizId).isTimed()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, TIMED_QUIZ_MESSAGE);
+        }
+        Long userId = currentUser.getId();
+        return gradeAttempt(courseId, quizId, request, userId, nextAttempt(userId, courseId, quizId),
+                LocalDateTime.now());
+    }
+
+    /**
+     * 按编译后的答案表判分，并把作答历史、进度与错题本交给异步管道；
+     * 一次性提交与限时考试交卷（含到期自动交卷）共用。attempt 为服务端推导的作答序号：
+     * 一次性提交取 nextAttempt，限时考试取开始会话时记录的序号
+     */
+    public AttemptResult gradeAttempt(Long courseId, String quizId, AttemptRequest request, Long userId,
+                                      int attempt, LocalDateTime submittedAt) {
+        AnswerKey key = answerKey(courseId, quizId);
 
         if (request == null || request.getAnswers() == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "answers format invalid");
         }
+        if (key.size() == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quiz has no questions");
+        }
 
-        // 获取Question实体，建立字符串ID到Long ID的映射
-        List<Question> questionEntities = questionRepository.findByQuizIdOrderByOrderIndexAsc(quizId);
-
-        // 如果Question实体不存在，自动创建它们（兼容旧数据）
-        if (questionEntities.isEmpty() && quiz.getQuestions() != null && !quiz.getQuestions().isEmpty()) {
-            syncQuestionsToEntity(courseId, quizId, quiz.getQuestions());
-            questionEntities = questionRepository.findByQuizIdOrderByOrderIndexAsc(quizId);
+        // 抽题/乱序测验：重新派生该学生本次作答的版本，把展示位置上的选项下标换算回原下标再判分
+        List<? extends AnswerKey.Response> answers = request.getAnswers();
+        QuizVariant variant = null;
+        if (key.isRandomized()) {
+            variant = key.variant(userId, quizId, attempt);
+            answers = key.toCanonical(answers, variant);
         }
+        AnswerKey.Grade grade = key.grade(answers, variant);
 
-        Map<String, Long> questionIdMap = questionEntities.stream()
-                .filter(q -> q.getOriginalId() != null)
-                .collect(Collectors.toMap(
-                        Question::getOriginalId, // 使用原始ID
-                        Question::getId,
-                        (existing, replacement) -> existing
-                ));
+        // 作答历史、进度与错题本异步批量写入，判分结果立即返回
+        attemptEventPipeline.publish(new AttemptEvent(userId, courseId, quizId, key.questionsVersion(),
+                grade.score(), grade.total(), grade.outcome(), wrongAnswers(answers, grade), submittedAt));
+        attemptCounter.completed(userId, courseId, quizId, attempt, () -> countAttempts(userId, courseId, quizId));
 
-        Map<String, Quiz.Question> qmap = Optional.ofNullable(quiz.getQuestions()).orElse(List.of())
-                .stream().collect(Collectors.toMap(Quiz.Question::getId, q -> q));
+        return new AttemptResult(quizId, userId, grade.score(), grade.total(), grade.results(), submittedAt);
+    }
 
-        int totalQuestions = qmap.size();
-        if (totalQuestions == 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quiz has no questions");
+    /**
+     * 答错（含未作答）且有题目实体的题目及用户提交的答案，用于自动加入错题本
+     */
+    private static List<AttemptEvent.WrongAnswer> wrongAnswers(List<? extends AnswerKey.Response> answers,
+                                                               AnswerKey.Grade grade) {
+        Map<String, List<Integer>> provided = new HashMap<>();
+        for (AnswerKey.Response a : answers) {
+            if (a.getQuestionId() != null) provided.putIfAbsent(a.getQuestionId(), a.getAnswer());
         }
-
-        int maxScore = 100;
-        // 计算每道题的基础分数和余数，确保总分正好是100
-        int baseScore = maxScore / totalQuestions;
-        int remainder = maxScore % totalQuestions;
-
-        // 为每道题分配分数：前remainder道题多1分，确保总分正好是100
-        // 按照题目在列表中的顺序分配分数
-        List<Quiz.Question> questionList = Optional.ofNullable(quiz.getQuestions()).orElse(List.of());
-        Map<String, Integer> questionScoreMap = new HashMap<>();
-        for (int i = 0; i < questionList.size(); i++) {
-            Quiz.Question q = questionList.get(i);
-            int score = baseScore + (i < remainder ? 1 : 0);
-            questionScoreMap.put(q.getId(), score);
+        List<AttemptEvent.WrongAnswer> wrong = new ArrayList<>();
+        for (AnswerKey.QuestionResult r : grade.results()) {
+            if (r.correct() || r.questionEntityId() == null) continue;
+            List<Integer> answer = provided.get(r.questionId());
+            wrong.add(new AttemptEvent.WrongAnswer(r.questionEntityId(), answer == null ? List.of() : answer));
         }
+        return wrong;
+    }
 
-        int totalScore = 0;
-        List<Map<String, Object>> results = new ArrayList<>();
-
-        // 处理用户提交的答案
-        for (AttemptRequest.Answer a : request.getAnswers()) {
-            Quiz.Question q = qmap.get(a.getQuestionId());
-            Map<String, Object> r = new HashMap<>();
-            r.put("questionId", a.getQuestionId());
-            // 添加Question实体的ID，用于错题本
-            Long questionEntityId = questionIdMap.get(a.getQuestionId());
-            if (questionEntityId != null) {
-                r.put("questionEntityId", questionEntityId);
-            }
-            if (q == null) {
-                r.put("correct", false);
-                r.put("score", 0);
-                results.add(r);
-                continue;
-            }
+    /**
+     * 下一次作答的序号（该用户在该测验已完成的作答次数 + 1）
+     */
+    public int nextAttempt(Long userId, Long courseId, String quizId) {
+        return attemptCounter.next(userId, courseId, quizId, () -> countAttempts(userId, courseId, quizId));
+    }
 
-            boolean correct = false;
-            int questionScore = questionScoreMap.getOrDefault(a.getQuestionId(), baseScore);
-
-            if ("single".equalsIgnoreCase(q.getType()) || "multiple".equalsIgnoreCase(q.getType()) || "truefalse".equalsIgnoreCase(q.getType())) {
-                List<Integer> correctAnswer = q.getAnswer() == null ? List.of() : q.getAnswer();
-                List<Integer> provided = a.getAnswer() == null ? List.of() : a.getAnswer();
-                // require exact match (order-insensitive)
-                Set<Integer> ca = new HashSet<>(correctAnswer);
-                Set<Integer> pa = new HashSet<>(provided);
-                correct = ca.equals(pa);
-                int score = correct ? questionScore : 0;
-                totalScore += score;
-                r.put("correct", correct);
-                r.put("score", score);
-            } else {
-                // unknown type: not auto-graded
-                r.put("correct", false);
-                r.put("score", 0);
-            }
-            results.add(r);
+    private long countAttempts(Long userId, Long courseId, String quizId) {
+        return quizAttemptRepository.countByUserIdAndCourseIdAndQuizId(userId, courseId, quizId);
+    }
+
+    /**
+     * 学生下一次作答看到的测验版本（序号由服务端推导）；限时测验的题目只在考试会话中下发（409）
+     */
+    public VariantView getVariant(Long courseId, String quizId, User currentUser) {
+        ensureCourseExists(courseId);
+        if (answerKey(courseId, quizId).isTimed()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, TIMED_QUIZ_MESSAGE);
         }
+        int attempt = nextAttempt(currentUser.getId(), courseId, quizId);
+        return new VariantView(quizId, attempt, variantQuestions(courseId, quizId, currentUser.getId(), attempt));
+    }
 
-        // 处理用户未回答的题目
-        for (Quiz.Question q : questionList) {
-            boolean alreadyProcessed = results.stream()
-                    .anyMatch(r -> q.getId().equals(r.get("questionId")));
-            if (!alreadyProcessed) {
-                Map<String, Object> r = new HashMap<>();
-                r.put("questionId", q.getId());
-                // 添加Question实体的ID
-                Long questionEntityId = questionIdMap.get(q.getId());
-                if (questionEntityId != null) {
-                    r.put("questionEntityId", questionEntityId);
-                }
-                r.put("correct", false);
-                r.put("score", 0);
-                results.add(r);
+    /**
+     * 按派生的顺序排列缓存的学生视图中的题目（不含答案），选项按展示位置重排；
+     * 未设置抽题/乱序的测验返回原顺序。限时考试会话也由此取得题目
+     */
+    public List<Quiz.Question> variantQuestions(Long courseId, String quizId, Long userId, int attempt) {
+        StudentViewCache.StudentView view = studentView(courseId, quizId);
+        AnswerKey key = answerKey(courseId, quizId);
+        if (view.questions().size() != key.size()) {
+            // 两个缓存分别失效，测验刚被修改时可能短暂不一致
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Quiz was modified, please retry");
+        }
+        if (!key.isRandomized()) return view.questions();
+
+        QuizVariant variant = key.variant(userId, quizId, attempt);
+        List<Quiz.Question> questions = new ArrayList<>(variant.size());
+        for (int p = 0; p < variant.size(); p++) {
+            int idx = variant.questionAt(p);
+            Quiz.Question q = view.questions().get(idx);
+            List<String> options = q.getOptions();
+            if (options != null) {
+                List<String> shown = new ArrayList<>(options.size());
+                for (int i = 0; i < options.size(); i++) shown.add(options.get(variant.canonicalOption(idx, i)));
+                options = shown;
             }
+            questions.add(Quiz.Question.builder()
+                    .id(q.getId())
+                    .type(q.getType())
+                    .question(q.getQuestion())
+                    .options(options)
+                    .build());
         }
+        return questions;
+    }
 
-        // 确保总分不超过maxScore（理论上应该正好等于maxScore）
-        int computed = Math.min(totalScore, maxScore);
-
-        // 保存进度记录
-        progressService.saveQuizProgress(currentUser.getId(), courseId, quizId, computed, maxScore);
+    /**
+     * attempt 为本版本对应的作答序号（仅供展示）；6.6 提交时 answer 中的选项下标按此处 options 的顺序
+     */
+    public record VariantView(String quizId, int attempt, List<Quiz.Question> questions) {
+    }
 
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("quizId", quizId);
-        resp.put("userId", currentUser.getId());
-        resp.put("score", computed);
-        resp.put("total", maxScore);
-        resp.put("results", results);
-        resp.put("submittedAt", java.time.LocalDateTime.now());
-        return resp;
+    public record AttemptResult(String quizId, Long userId, int score, int total,
+                                List<AnswerKey.QuestionResult> results, LocalDateTime submittedAt) {
     }
 
     // DTO for attempts
@@ -327,7 +499,7 @@ public class QuizService {
         private List<Answer> answers;
 
         @Data
-        public static class Answer {
+        public static class Answer implements AnswerKey.Response {
             private String questionId;
             private List<Integer> answer;
         }
@@ -1,19 +1,26 @@
 package com.backend.service;
 
+import com.backend.entity.StoredBlob;
 import com.backend.entity.User;
+import com.backend.entity.UserAvatar;
+import com.backend.repository.UserAvatarRepository;
 import com.backend.repository.UserRepository;
+import com.backend.util.PrincipalCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -23,10 +30,14 @@ public class UserService implements UserDetailsService {
             "image/jpeg", "image/png", "image/gif", "image/webp");
 
     private final UserRepository userRepository;
+    private final UserAvatarRepository userAvatarRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
+    private final BlobService blobService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
-    public UserDetails loadUserByUsername(String username) {
+    public User loadUserByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
     }
@@ -55,7 +66,20 @@ public class UserService implements UserDetailsService {
         if (bio != null) {
             user.setBio(bio);
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
+    }
+
+    public User changeRole(Long userId, User.Role role) {
+        if (role == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "角色不能为空");
+        }
+        User user = getById(userId);
+        user.setRole(role);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
     }
 
     public void setAvatar(Long userId, MultipartFile file) {
@@ -70,11 +94,43 @@ public class UserService implements UserDetailsService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "头像大小不能超过 2MB");
         }
         User user = getById(userId);
-        try {
-            user.setAvatar(file.getBytes());
+        StoredBlob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = blobService.store(in);
         } catch (IOException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "读取图片失败");
         }
-        userRepository.save(user);
+        String previousHash;
+        try {
+            // 加锁读取并替换头像记录，并发更换时每个请求拿到的旧 hash 各不相同
+            previousHash = transactionTemplate.execute(status -> {
+                UserAvatar avatar = userAvatarRepository.findWithLockByUserId(userId)
+                        .orElseGet(() -> UserAvatar.builder().userId(userId).build());
+                String previous = avatar.getBlobHash();
+                avatar.setContentType(contentType);
+                avatar.setBlobHash(blob.getHash());
+                userAvatarRepository.save(avatar);
+                return previous;
+            });
+        } catch (RuntimeException e) {
+            // 记录未写入，撤销新图片的引用
+            blobService.release(blob.getHash());
+            throw e;
+        }
+        // 新图片已登记引用，再释放旧图片的引用（内容相同时计数不变）
+        blobService.release(previousHash);
+        principalCache.invalidate(user.getUsername());
+    }
+
+    public boolean hasAvatar(Long userId) {
+        return userAvatarRepository.existsById(userId);
+    }
+
+    public Optional<UserAvatar> getAvatar(Long userId) {
+        return userAvatarRepository.findById(userId);
+    }
+
+    public Resource openAvatar(UserAvatar avatar) {
+        return blobService.load(avatar.getBlobHash());
     }
 }
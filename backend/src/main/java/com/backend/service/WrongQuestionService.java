@@ -3,127 +3,225 @@ package com.backend.service;
 import com.backend.entity.Question;
 import com.backend.entity.User;
 import com.backend.entity.WrongQuestion;
+import com.backend.quiz.AttemptBatchWriter;
+import com.backend.quiz.AttemptEvent;
+import com.backend.quiz.SpacedRepetition;
+import com.backend.quiz.WrongQuestionCounters;
 import com.backend.repository.QuestionRepository;
 import com.backend.repository.WrongQuestionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class WrongQuestionService {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_DUE_LIMIT = 100;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final WrongQuestionRepository wrongQuestionRepository;
     private final QuestionRepository questionRepository;
     private final CourseService courseService;
+    private final WrongQuestionCounters counters;
+    private final TransactionTemplate transactionTemplate;
+    private final AttemptBatchWriter attemptBatchWriter;
 
     /**
-     * 获取用户的错题列表
+     * 获取用户的错题列表，按加入时间倒序。size 为 null 时返回全部；
+     * 否则最多返回 size 条，before 为上一页最后一条错题的 id（键集分页）
      */
-    public List<WrongQuestion> getWrongQuestions(Long userId, Long courseId, Boolean mastered) {
+    public List<WrongQuestion> getWrongQuestions(Long userId, Long courseId, Boolean mastered, Long before, Integer size) {
+        if (size != null && (size < 1 || size > MAX_PAGE_SIZE)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_PAGE_SIZE);
+        }
         courseService.getCourse(courseId); // 验证课程存在
 
+        Limit limit = size == null ? Limit.unlimited() : Limit.of(size);
         List<WrongQuestion> wrongQuestions;
-        if (mastered == null) {
-            wrongQuestions = wrongQuestionRepository.findByUserIdAndCourseIdOrderByAddedAtDesc(userId, courseId);
+        if (before == null) {
+            wrongQuestions = wrongQuestionRepository.findPage(userId, courseId, mastered, limit);
         } else {
-            wrongQuestions = wrongQuestionRepository.findByUserIdAndCourseIdAndMasteredOrderByAddedAtDesc(userId, courseId, mastered);
+            WrongQuestion cursor = wrongQuestionRepository.findById(before)
+                    .filter(wq -> Objects.equals(wq.getUserId(), userId) && Objects.equals(wq.getCourseId(), courseId))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid before cursor"));
+            wrongQuestions = wrongQuestionRepository.findPageAfter(userId, courseId, mastered,
+                    cursor.getAddedAt(), cursor.getId(), limit);
         }
+        attachQuestions(wrongQuestions);
+        return wrongQuestions;
+    }
 
-        // 加载关联的Question信息
-        for (WrongQuestion wq : wrongQuestions) {
-            questionRepository.findById(wq.getQuestionId()).ifPresent(wq::setQuestion);
-        }
+    /**
+     * 一次查询加载关联的 Question；选项与答案（以及错题的 userAnswer）由 @BatchSize 按批加载
+     */
+    private void attachQuestions(List<WrongQuestion> wrongQuestions) {
+        if (wrongQuestions.isEmpty()) return;
+        Set<Long> ids = new HashSet<>();
+        for (WrongQuestion wq : wrongQuestions) ids.add(wq.getQuestionId());
+        Map<Long, Question> questions = new HashMap<>();
+        for (Question q : questionRepository.findAllById(ids)) questions.put(q.getId(), q);
+        for (WrongQuestion wq : wrongQuestions) wq.setQuestion(questions.get(wq.getQuestionId()));
+    }
 
-        return wrongQuestions;
+    private record Change(WrongQuestion wrongQuestion, long total, long mastered) {
     }
 
     /**
      * 添加错题到错题本
      */
-    @Transactional
     public WrongQuestion addWrongQuestion(Long userId, Long courseId, Long questionId, List<Integer> userAnswer) {
         // 验证课程存在
         courseService.getCourse(courseId);
 
-        // 验证题目存在
-        Question question = questionRepository.findById(questionId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found"));
+        return counters.write(userId, () -> {
+            Change change = transactionTemplate.execute(status -> {
+                // 验证题目存在
+                Question question = questionRepository.findById(questionId)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found"));
 
-        if (!Objects.equals(question.getCourseId(), courseId)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Question does not belong to this course");
-        }
+                if (!Objects.equals(question.getCourseId(), courseId)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Question does not belong to this course");
+                }
 
-        // 检查是否已存在
-        Optional<WrongQuestion> existing = wrongQuestionRepository.findByUserIdAndQuestionId(userId, questionId);
-        if (existing.isPresent()) {
-            WrongQuestion wq = existing.get();
-            // 更新用户答案和练习次数
-            wq.setUserAnswer(userAnswer);
-            wq.setMastered(false); // 重新添加时重置掌握状态
-            wq.setPracticeCount(wq.getPracticeCount() + 1);
-            wq.setLastPracticedAt(LocalDateTime.now());
-            return wrongQuestionRepository.save(wq);
-        }
+                // 检查是否已存在
+                Optional<WrongQuestion> existing = wrongQuestionRepository.findWithLockByUserIdAndQuestionId(userId, questionId);
+                if (existing.isPresent()) {
+                    WrongQuestion wq = existing.get();
+                    long mastered = wq.getMastered() ? -1 : 0;
+                    // 更新用户答案和练习次数
+                    wq.setUserAnswer(userAnswer);
+                    wq.setMastered(false); // 重新添加时重置掌握状态
+                    wq.setPracticeCount(wq.getPracticeCount() + 1);
+                    LocalDateTime now = LocalDateTime.now();
+                    wq.setLastPracticedAt(now);
+                    wq.applySchedule(SpacedRepetition.review(wq.schedule(), SpacedRepetition.LAPSE_QUALITY), now);
+                    return new Change(wrongQuestionRepository.save(wq), 0, mastered);
+                }
 
-        // 创建新的错题记录
-        WrongQuestion wrongQuestion = WrongQuestion.builder()
-                .userId(userId)
-                .courseId(courseId)
-                .questionId(questionId)
-                .quizId(question.getQuizId())
-                .userAnswer(userAnswer)
-                .mastered(false)
-                .practiceCount(1)
-                .addedAt(LocalDateTime.now())
-                .lastPracticedAt(LocalDateTime.now())
-                .build();
+                // 创建新的错题记录
+                WrongQuestion wrongQuestion = WrongQuestion.builder()
+                        .userId(userId)
+                        .courseId(courseId)
+                        .questionId(questionId)
+                        .quizId(question.getQuizId())
+                        .userAnswer(userAnswer)
+                        .mastered(false)
+                        .practiceCount(1)
+                        .addedAt(LocalDateTime.now())
+                        .lastPracticedAt(LocalDateTime.now())
+                        .build();
 
-        return wrongQuestionRepository.save(wrongQuestion);
+                return new Change(wrongQuestionRepository.save(wrongQuestion), 1, 0);
+            });
+            counters.adjust(userId, courseId, change.total(), change.mastered());
+            return change.wrongQuestion();
+        });
     }
 
     /**
-     * 标记错题为已掌握
+     * 批量添加错题（如一次答卷中的全部错题）：一次 IN 查询校验题目，在单个事务内批量插入/更新，
+     * 语义与逐条 addWrongQuestion 相同。返回这些题目对应的错题
      */
-    @Transactional
-    public WrongQuestion markAsMastered(Long userId, Long wrongQuestionId) {
-        WrongQuestion wrongQuestion = wrongQuestionRepository.findById(wrongQuestionId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wrong question not found"));
+    public List<WrongQuestion> addWrongQuestions(Long userId, Long courseId, List<AttemptEvent.WrongAnswer> answers) {
+        if (answers == null || answers.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No wrong questions given");
+        }
+        if (answers.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_SIZE + " wrong questions per request");
+        }
+        courseService.getCourse(courseId);
 
-        if (!Objects.equals(wrongQuestion.getUserId(), userId)) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not your wrong question");
+        Set<Long> ids = new HashSet<>();
+        for (AttemptEvent.WrongAnswer a : answers) {
+            if (a.questionEntityId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "questionId is required");
+            }
+            ids.add(a.questionEntityId());
+        }
+        Map<Long, String> quizIds = new HashMap<>();
+        for (Question q : questionRepository.findAllById(ids)) {
+            if (!Objects.equals(q.getCourseId(), courseId)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Question does not belong to this course");
+            }
+            quizIds.put(q.getId(), q.getQuizId());
+        }
+        if (quizIds.size() < ids.size()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found");
         }
 
-        wrongQuestion.setMastered(true);
-        return wrongQuestionRepository.save(wrongQuestion);
+        attemptBatchWriter.writeWrongAnswers(userId, courseId, quizIds, answers, LocalDateTime.now());
+        return wrongQuestionRepository.findByUserIdAndQuestionIdIn(userId, ids);
+    }
+
+    /**
+     * 标记错题为已掌握
+     */
+    public WrongQuestion markAsMastered(Long userId, Long wrongQuestionId) {
+        return counters.write(userId, () -> {
+            Change change = transactionTemplate.execute(status -> {
+                WrongQuestion wrongQuestion = owned(userId, wrongQuestionId);
+                long mastered = wrongQuestion.getMastered() ? 0 : 1;
+                wrongQuestion.setMastered(true);
+                wrongQuestion.setDueAt(null);
+                return new Change(wrongQuestionRepository.save(wrongQuestion), 0, mastered);
+            });
+            WrongQuestion wq = change.wrongQuestion();
+            counters.adjust(userId, wq.getCourseId(), 0, change.mastered());
+            return wq;
+        });
     }
 
     /**
      * 从错题本中移除
      */
-    @Transactional
     public void removeWrongQuestion(Long userId, Long wrongQuestionId) {
-        WrongQuestion wrongQuestion = wrongQuestionRepository.findById(wrongQuestionId)
+        counters.write(userId, () -> {
+            Change change = transactionTemplate.execute(status -> {
+                WrongQuestion wrongQuestion = owned(userId, wrongQuestionId);
+                wrongQuestionRepository.delete(wrongQuestion);
+                return new Change(wrongQuestion, -1, wrongQuestion.getMastered() ? -1 : 0);
+            });
+            counters.adjust(userId, change.wrongQuestion().getCourseId(), change.total(), change.mastered());
+            return null;
+        });
+    }
+
+    /**
+     * 加行锁读取当前用户的错题，保证据此计算的计数增量与并发写入不冲突
+     */
+    private WrongQuestion owned(Long userId, Long wrongQuestionId) {
+        WrongQuestion wrongQuestion = wrongQuestionRepository.findWithLockById(wrongQuestionId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wrong question not found"));
 
         if (!Objects.equals(wrongQuestion.getUserId(), userId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not your wrong question");
         }
-
-        wrongQuestionRepository.deleteById(wrongQuestionId);
+        return wrongQuestion;
     }
 
     /**
-     * 增加练习次数
+     * 增加练习次数；给出 quality（0~5 自评）时按 SM-2 计算下次复习时间，
+     * 质量 < 3 视为仍未掌握，立即重新到期
      */
     @Transactional
-    public WrongQuestion incrementPracticeCount(Long userId, Long wrongQuestionId) {
+    public WrongQuestion incrementPracticeCount(Long userId, Long wrongQuestionId, Integer quality) {
+        if (quality != null && (quality < SpacedRepetition.MIN_QUALITY || quality > SpacedRepetition.MAX_QUALITY)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "quality must be between 0 and 5");
+        }
         WrongQuestion wrongQuestion = wrongQuestionRepository.findById(wrongQuestionId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Wrong question not found"));
 
@@ -131,20 +229,44 @@ public class WrongQuestionService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not your wrong question");
         }
 
+        LocalDateTime now = LocalDateTime.now();
         wrongQuestion.setPracticeCount(wrongQuestion.getPracticeCount() + 1);
-        wrongQuestion.setLastPracticedAt(LocalDateTime.now());
+        wrongQuestion.setLastPracticedAt(now);
+        if (quality != null && !wrongQuestion.getMastered()) {
+            wrongQuestion.applySchedule(SpacedRepetition.review(wrongQuestion.schedule(), quality), now);
+        }
         return wrongQuestionRepository.save(wrongQuestion);
     }
 
     /**
-     * 获取错题统计
+     * 当前应复习的错题：已到期、未掌握，按到期时间升序取前 limit 条
      */
-    public WrongQuestionStats getStats(Long userId, Long courseId) {
-        long total = wrongQuestionRepository.countByUserIdAndCourseIdAndMastered(userId, courseId, null);
-        long mastered = wrongQuestionRepository.countByUserIdAndCourseIdAndMastered(userId, courseId, true);
-        long notMastered = wrongQuestionRepository.countByUserIdAndCourseIdAndMastered(userId, courseId, false);
+    public List<WrongQuestion> getDueQuestions(Long userId, Long courseId, int limit) {
+        if (limit < 1 || limit > MAX_DUE_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_DUE_LIMIT);
+        }
+        courseService.getCourse(courseId);
+        List<WrongQuestion> due = wrongQuestionRepository.findByUserIdAndCourseIdAndDueAtLessThanEqualOrderByDueAtAsc(
+                userId, courseId, LocalDateTime.now(), Limit.of(limit));
+        attachQuestions(due);
+        return due;
+    }
 
-        return new WrongQuestionStats(total, mastered, notMastered);
+    /**
+     * 获取错题统计：首次查询用一次分组聚合加载，之后由内存计数器提供
+     */
+    public WrongQuestionStats getStats(Long userId, Long courseId) {
+        WrongQuestionCounters.Counts counts = counters.get(userId, courseId, () -> {
+            long total = 0;
+            long mastered = 0;
+            for (Object[] row : wrongQuestionRepository.countGroupByMastered(userId, courseId)) {
+                long n = ((Number) row[1]).longValue();
+                total += n;
+                if (Boolean.TRUE.equals(row[0])) mastered += n;
+            }
+            return new WrongQuestionCounters.Counts(total, mastered);
+        });
+        return new WrongQuestionStats(counts.total(), counts.mastered(), counts.notMastered());
     }
 
     public static class WrongQuestionStats {
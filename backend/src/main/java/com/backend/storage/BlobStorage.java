@@ -0,0 +1,55 @@
+package com.backend.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * 按内容寻址的二进制存储（课程文件、头像共用）。存储键即内容的 SHA-256（十六进制），
+ * 相同内容只保存一份；引用计数由 BlobService 维护
+ */
+public interface BlobStorage {
+    /**
+     * 将输入流写入临时区并同时计算 SHA-256（边读边写，不在内存中整体缓冲）
+     */
+    StagedBlob stage(InputStream in) throws IOException;
+
+    boolean exists(String hash);
+
+    /**
+     * 以 Resource 形式打开内容，供流式下载与 Range 请求使用
+     */
+    Resource load(String hash);
+
+    void delete(String hash);
+
+    /**
+     * 遍历已发布内容的 hash，供启动时回收没有引用记录的内容
+     */
+    void forEachHash(Consumer<String> action);
+
+    /**
+     * 删除早于 cutoff 的临时文件（上次运行中断时残留的未发布内容）
+     */
+    void purgeStaged(Instant cutoff);
+
+    /**
+     * 已写入临时区、尚未对外可见的内容；close() 时若未 publish 则删除临时文件
+     */
+    interface StagedBlob extends AutoCloseable {
+        String sha256();
+
+        long size();
+
+        /**
+         * 移动到以摘要命名的正式位置；同样内容已存在时直接丢弃临时文件
+         */
+        void publish() throws IOException;
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,168 @@
+package com.backend.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 本地文件系统存储：内容先流式写入临时文件并同时计算摘要，publish 时原子移动到
+ * {root}/{hash 前两位}/{hash}，避免单个目录下文件过多
+ */
+@Component
+public class LocalBlobStorage implements BlobStorage {
+    private final Path root;
+    private final Path tmpDir;
+
+    public LocalBlobStorage(@Value("${app.storage.blob-dir:data/blobs}") String rootDir) {
+        this.root = Path.of(rootDir).toAbsolutePath().normalize();
+        this.tmpDir = root.resolve("tmp");
+        try {
+            Files.createDirectories(tmpDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create storage directory " + root, e);
+        }
+    }
+
+    @Override
+    public StagedBlob stage(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try (DigestInputStream din = new DigestInputStream(in, digest)) {
+            long size = Files.copy(din, tmp, StandardCopyOption.REPLACE_EXISTING);
+            return new LocalStagedBlob(tmp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(resolve(hash));
+    }
+
+    @Override
+    public Resource load(String hash) {
+        Path path = resolve(hash);
+        if (!Files.isReadable(path)) {
+            throw new IllegalStateException("Stored blob missing: " + hash);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public void delete(String hash) {
+        try {
+            Files.deleteIfExists(resolve(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete stored blob " + hash, e);
+        }
+    }
+
+    @Override
+    public void forEachHash(Consumer<String> action) {
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                if (!Files.isDirectory(dir) || dir.equals(tmpDir)) continue;
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.map(f -> f.getFileName().toString())
+                            .filter(LocalBlobStorage::isHash)
+                            .forEach(action);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list stored blobs", e);
+        }
+    }
+
+    @Override
+    public void purgeStaged(Instant cutoff) {
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path tmp : (Iterable<Path>) files::iterator) {
+                if (Files.getLastModifiedTime(tmp).toInstant().isBefore(cutoff)) Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to purge staged blobs", e);
+        }
+    }
+
+    private Path resolve(String hash) {
+        if (!isHash(hash)) {
+            throw new IllegalArgumentException("Invalid blob hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static boolean isHash(String hash) {
+        return hash != null && hash.length() == 64 && hash.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class LocalStagedBlob implements StagedBlob {
+        private final Path tmp;
+        private final String sha256;
+        private final long size;
+
+        private LocalStagedBlob(Path tmp, String sha256, long size) {
+            this.tmp = tmp;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+
+        @Override
+        public String sha256() {
+            return sha256;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void publish() throws IOException {
+            Path target = resolve(sha256);
+            if (Files.exists(target)) {
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ignored) {
+                // 并发写入了相同内容，保留已存在的文件
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // 临时文件清理失败不影响结果
+            }
+        }
+    }
+}
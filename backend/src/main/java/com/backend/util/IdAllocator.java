@@ -0,0 +1,110 @@
+package com.backend.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 按序列名分配递增数字 id（hi/lo）：每次从 id_sequence 表预留一整块，块内的 id 只在内存中递增，
+ * 用完才再访问数据库。预留在独立事务中加行锁完成，多线程、多实例之间不会分配出相同的 id；
+ * 进程重启或块未用完时留下的空号不会复用。
+ * 序列行不存在时由调用方提供的 seed（现有数据的最大数字后缀）初始化，只在首次使用时扫描一次
+ */
+@Component
+public class IdAllocator {
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate requiresNew;
+    private final int blockSize;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    private static final class Block {
+        long next;
+        long limit;
+    }
+
+    public IdAllocator(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                       @Value("${app.ids.block-size:20}") int blockSize) {
+        this.jdbc = jdbc;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * 序列中的下一个数字；同一序列的调用串行，不同序列互不影响
+     */
+    public long next(String sequence, LongSupplier seed) {
+        Block block = blocks.computeIfAbsent(sequence, k -> new Block());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                block.next = reserve(sequence, seed);
+                block.limit = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * 保证此后分配的数字都大于 value（如发现库中已有更大的后缀时），并丢弃内存中剩余的块
+     */
+    public void advanceTo(String sequence, long value) {
+        Block block = blocks.computeIfAbsent(sequence, k -> new Block());
+        synchronized (block) {
+            requiresNew.executeWithoutResult(status -> jdbc.update(
+                    "UPDATE id_sequence SET next_value = ? WHERE name = ? AND next_value <= ?",
+                    value + 1, sequence, value));
+            block.limit = block.next;
+        }
+    }
+
+    /**
+     * 预留 [start, start + blockSize) 并返回 start；两个实例同时创建序列行时，失败的一方重试一次读取
+     */
+    private long reserve(String sequence, LongSupplier seed) {
+        try {
+            return requiresNew.execute(status -> reserveInTransaction(sequence, seed));
+        } catch (DuplicateKeyException e) {
+            return requiresNew.execute(status -> reserveInTransaction(sequence, seed));
+        }
+    }
+
+    private long reserveInTransaction(String sequence, LongSupplier seed) {
+        List<Long> current = jdbc.queryForList(
+                "SELECT next_value FROM id_sequence WHERE name = ? FOR UPDATE", Long.class, sequence);
+        if (current.isEmpty()) {
+            long start = Math.max(seed.getAsLong(), 0L) + 1;
+            jdbc.update("INSERT INTO id_sequence (name, next_value) VALUES (?, ?)", sequence, start + blockSize);
+            return start;
+        }
+        long start = current.get(0);
+        jdbc.update("UPDATE id_sequence SET next_value = ? WHERE name = ?", start + blockSize, sequence);
+        return start;
+    }
+
+    /**
+     * 形如 prefix + 数字 的 id 中最大的数字后缀，没有则为 0；其他格式的 id 忽略
+     */
+    public static long maxSuffix(Collection<String> ids, String prefix) {
+        long max = 0;
+        for (String id : ids) {
+            if (id == null || !id.startsWith(prefix)) continue;
+            try {
+                max = Math.max(max, Long.parseLong(id.substring(prefix.length())));
+            } catch (NumberFormatException ignored) {
+                // 如 quiz1-2 这类非纯数字后缀
+            }
+        }
+        return max;
+    }
+}
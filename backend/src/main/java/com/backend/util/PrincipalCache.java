@@ -0,0 +1,124 @@
+package com.backend.util;
+
+import com.backend.entity.User;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 已认证用户主体缓存（按用户名），避免每个请求都查询 account 表。
+ * 容量有上限，条目写入后超过 TTL 即失效；资料、头像、角色变更时需主动失效。
+ * 缓存的是不可变快照（不含密码），每次命中返回新的游离 User，请求中对主体的修改不会影响缓存。
+ * 失效按用户名分段计数：加载期间该段发生过失效时，加载结果不留在缓存中，避免旧数据在失效后被放回。
+ */
+@Component
+public class PrincipalCache {
+    private static final int MAX_SIZE = 10_000;
+    private static final long TTL_MILLIS = 5 * 60 * 1000L; // 5分钟
+    private static final int STRIPES = 64;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    private record Snapshot(Long id, String username, User.Role role, String nickname, String bio) {
+        static Snapshot of(User user) {
+            return new Snapshot(user.getId(), user.getUsername(), user.getRole(), user.getNickname(), user.getBio());
+        }
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setRole(role);
+            user.setNickname(nickname);
+            user.setBio(bio);
+            return user;
+        }
+    }
+
+    private record Entry(Snapshot principal, long expiresAt) {
+    }
+
+    /**
+     * 命中且未过期则直接返回，否则通过 loader 加载并放入缓存
+     */
+    public User get(String username, Function<String, User> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(username);
+        if (entry != null) {
+            if (entry.expiresAt() > now) {
+                hits.increment();
+                return entry.principal().toUser();
+            }
+            if (entries.remove(username, entry)) {
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        int stripe = stripe(username);
+        long version = versions.get(stripe);
+        Snapshot principal = Snapshot.of(loader.apply(username));
+        if (entries.size() >= MAX_SIZE) {
+            evict(now);
+        }
+        Entry loaded = new Entry(principal, now + TTL_MILLIS);
+        entries.put(username, loaded);
+        // invalidate 先递增版本再删除：放入之后再检查一次，版本变化说明加载可能早于失效，撤回本次放入
+        if (versions.get(stripe) != version) {
+            entries.remove(username, loaded);
+        }
+        return principal.toUser();
+    }
+
+    public void invalidate(String username) {
+        if (username == null) return;
+        versions.incrementAndGet(stripe(username));
+        if (entries.remove(username) != null) {
+            evictions.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) versions.incrementAndGet(i);
+        int size = entries.size();
+        entries.clear();
+        evictions.add(size);
+    }
+
+    private static int stripe(String username) {
+        return (username.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    /**
+     * 先清理过期条目；仍超出容量时再按迭代顺序淘汰，直到留出 1/10 空间
+     */
+    private void evict(long now) {
+        entries.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().expiresAt() <= now;
+            if (expired) evictions.increment();
+            return expired;
+        });
+        int target = MAX_SIZE - MAX_SIZE / 10;
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    public record Stats(int size, long hits, long misses, long evictions) {
+    }
+}
@@ -5,7 +5,7 @@
 
 -- 密码都是 "123456"，使用 BCrypt 加密
 -- BCrypt hash for "123456": $2b$10$suuVlIIyfyAsF2hS6GTEIOn1RsxaZLUDUkzP8STICny4n2fs1UIq.
--- avatar 存 BLOB，初始为空；nickname、bio 可为空
+-- 头像单独存于 user_avatar 表，初始为空；nickname、bio 可为空
 INSERT INTO account (id, username, password, role, nickname, bio) VALUES
 (1, 'admin', '$2b$10$suuVlIIyfyAsF2hS6GTEIOn1RsxaZLUDUkzP8STICny4n2fs1UIq.', 'ADMIN', NULL, NULL),
 (2, '胡久鸣', '$2b$10$suuVlIIyfyAsF2hS6GTEIOn1RsxaZLUDUkzP8STICny4n2fs1UIq.', 'USER', NULL, NULL),
@@ -0,0 +1,55 @@
+package com.backend.graph;
+
+import com.backend.entity.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 邻域遍历的深度是最短跳数，与遍历模式和边的存储顺序无关
+ */
+class CompactGraphTest {
+
+    private static Graph.Node node(String id) {
+        return Graph.Node.builder().id(id).label(id).build();
+    }
+
+    private static Graph.Relation edge(String id, String from, String to) {
+        return Graph.Relation.builder().id(id).from(from).to(to).type("next").directed(true).build();
+    }
+
+    private static Map<String, Integer> depths(List<CompactGraph.Visit> visits) {
+        Map<String, Integer> depths = new HashMap<>();
+        for (CompactGraph.Visit v : visits) {
+            assertEquals(null, depths.put(v.nodeId(), v.depth()), "visited twice: " + v.nodeId());
+        }
+        return depths;
+    }
+
+    /**
+     * s→a→d→e 与 s→b→c→d：d 的最短深度为 2，e 为 3；深度优先先走 b 分支时也不能把 d 记为 3
+     */
+    @Test
+    void depthFirstNeighborhoodUsesShortestDepths() {
+        List<Graph.Node> nodes = Stream.of("s", "a", "b", "c", "d", "e").map(CompactGraphTest::node).toList();
+        List<Graph.Relation> forward = List.of(
+                edge("r1", "s", "a"), edge("r2", "a", "d"), edge("r3", "d", "e"),
+                edge("r4", "s", "b"), edge("r5", "b", "c"), edge("r6", "c", "d"));
+        List<Graph.Relation> reversed = forward.reversed();
+        Map<String, Integer> expected = Map.of("s", 0, "a", 1, "b", 1, "c", 2, "d", 2, "e", 3);
+
+        for (List<Graph.Relation> relations : List.of(forward, reversed)) {
+            CompactGraph g = new CompactGraph(1, nodes, relations);
+            int start = g.indexOf("s");
+            for (boolean bfs : new boolean[]{true, false}) {
+                List<CompactGraph.Visit> visits = g.neighborhood(start, 3, CompactGraph.Direction.OUT, -1, bfs);
+                assertEquals(expected, depths(visits), "bfs=" + bfs);
+            }
+        }
+    }
+}
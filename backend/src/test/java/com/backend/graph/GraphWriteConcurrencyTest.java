@@ -0,0 +1,94 @@
+package com.backend.graph;
+
+import com.backend.entity.Course;
+import com.backend.entity.Graph;
+import com.backend.entity.GraphNode;
+import com.backend.entity.GraphRelation;
+import com.backend.repository.CourseRepository;
+import com.backend.repository.GraphNodeRepository;
+import com.backend.repository.GraphRelationRepository;
+import com.backend.service.GraphService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并发写入同一课程的知识图谱：所有写入都应落库并进入内存索引（无丢失更新），节点/关系 id 不重复
+ */
+@SpringBootTest(properties = "app.storage.blob-dir=target/test-blobs")
+class GraphWriteConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int NODES_PER_THREAD = 25;
+
+    @Autowired
+    private GraphService graphService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private GraphNodeRepository graphNodeRepository;
+    @Autowired
+    private GraphRelationRepository graphRelationRepository;
+
+    @Test
+    void concurrentWritersKeepEveryWriteWithUniqueIds() throws Exception {
+        Long courseId = courseRepository.save(Course.builder().title("graph-concurrency").authorId(1L).build()).getId();
+        String hub = graphService.createNode(courseId, Graph.Node.builder().label("hub").build()).getId();
+
+        // 每个线程创建自己的节点并从 hub 连一条关系，同时反复修改 hub 的描述
+        List<Callable<Void>> writers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(() -> {
+                start.await();
+                for (int i = 0; i < NODES_PER_THREAD; i++) {
+                    Graph.Node node = graphService.createNode(courseId,
+                            Graph.Node.builder().label("n-" + thread + "-" + i).build());
+                    graphService.createRelation(courseId, Graph.Relation.builder()
+                            .from(hub).to(node.getId()).type("contains").build());
+                    graphService.updateNode(courseId, hub,
+                            Graph.Node.builder().description("writer " + thread).build());
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> w : writers) futures.add(pool.submit(w));
+            start.countDown();
+            for (Future<Void> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int expectedNodes = THREADS * NODES_PER_THREAD + 1;
+        int expectedRelations = THREADS * NODES_PER_THREAD;
+
+        List<GraphNode> nodeRows = graphNodeRepository.findByCourseIdOrderByIdAsc(courseId);
+        List<GraphRelation> relationRows = graphRelationRepository.findByCourseIdOrderByIdAsc(courseId);
+        assertEquals(expectedNodes, nodeRows.size());
+        assertEquals(expectedRelations, relationRows.size());
+        assertEquals(expectedNodes, distinct(nodeRows.stream().map(GraphNode::getNodeId).toList()));
+        assertEquals(expectedRelations, distinct(relationRows.stream().map(GraphRelation::getRelationId).toList()));
+
+        // 内存索引与数据库一致
+        assertEquals(expectedNodes, graphService.listNodes(courseId).size());
+        assertEquals(expectedRelations, graphService.listRelations(courseId, hub, null, null).size());
+    }
+
+    private static int distinct(List<String> ids) {
+        return new HashSet<>(ids).size();
+    }
+}
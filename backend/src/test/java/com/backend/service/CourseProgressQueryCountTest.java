@@ -0,0 +1,77 @@
+package com.backend.service;
+
+import com.backend.entity.Course;
+import com.backend.entity.Quiz;
+import com.backend.entity.User;
+import com.backend.repository.CourseRepository;
+import com.backend.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 多课程进度列表的 SQL 语句数与课程数无关：一次取课程测验数与汇总行，一次取已完成的进度记录
+ */
+@SpringBootTest(properties = "app.storage.blob-dir=target/test-blobs")
+class CourseProgressQueryCountTest {
+    private static final int COURSES = 6;
+    private static final long EXPECTED_STATEMENTS = 2;
+
+    @Autowired
+    private ProgressService progressService;
+    @Autowired
+    private QuizService quizService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+    private final List<Long> courseIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.findById(1L).orElseThrow();
+        for (int c = 0; c < COURSES; c++) {
+            Long courseId = courseRepository.save(Course.builder().title("progress-" + c).authorId(user.getId()).build())
+                    .getId();
+            Quiz quiz = quizService.createQuiz(courseId, Quiz.builder()
+                    .title("quiz " + c)
+                    .questions(List.of(Quiz.Question.builder()
+                            .type("single")
+                            .question("question")
+                            .options(List.of("A", "B"))
+                            .answer(List.of(0))
+                            .build()))
+                    .build(), user);
+            progressService.saveQuizProgress(user.getId(), courseId, quiz.getId(), 80, 100);
+            courseIds.add(courseId);
+        }
+    }
+
+    @Test
+    void courseListLoadsWithFixedStatementCount() {
+        assertEquals(EXPECTED_STATEMENTS, statementsFor(courseIds.subList(0, 1)));
+        assertEquals(EXPECTED_STATEMENTS, statementsFor(courseIds));
+    }
+
+    private long statementsFor(List<Long> ids) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        List<ProgressService.CourseProgressDTO> progress = progressService.getCourseProgressByCourseIds(user.getId(), ids);
+        assertEquals(ids.size(), progress.size());
+        return statistics.getPrepareStatementCount();
+    }
+}
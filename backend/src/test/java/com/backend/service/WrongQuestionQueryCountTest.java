@@ -0,0 +1,97 @@
+package com.backend.service;
+
+import com.backend.entity.Course;
+import com.backend.entity.Question;
+import com.backend.entity.Quiz;
+import com.backend.entity.User;
+import com.backend.entity.WrongQuestion;
+import com.backend.repository.CourseRepository;
+import com.backend.repository.QuestionRepository;
+import com.backend.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 错题列表的 SQL 语句数与页大小无关：课程校验、分页查询、题目批量加载，
+ * 以及 userAnswer / 选项 / 答案三个集合各一次批量加载
+ */
+@SpringBootTest(properties = "app.storage.blob-dir=target/test-blobs")
+class WrongQuestionQueryCountTest {
+    private static final int QUESTIONS = 40;
+    private static final long EXPECTED_STATEMENTS = 6;
+
+    @Autowired
+    private WrongQuestionService wrongQuestionService;
+    @Autowired
+    private QuizService quizService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private QuestionRepository questionRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Long courseId;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.findById(1L).orElseThrow();
+        courseId = courseRepository.save(Course.builder().title("wrong-question-queries").authorId(user.getId()).build())
+                .getId();
+        List<Quiz.Question> questions = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            questions.add(Quiz.Question.builder()
+                    .type("single")
+                    .question("question " + i)
+                    .options(List.of("A", "B", "C", "D"))
+                    .answer(List.of(1))
+                    .build());
+        }
+        Quiz quiz = quizService.createQuiz(courseId,
+                Quiz.builder().title("query count").questions(questions).build(), user);
+        for (Question q : questionRepository.findByQuizIdOrderByOrderIndexAsc(quiz.getId())) {
+            wrongQuestionService.addWrongQuestion(user.getId(), courseId, q.getId(), List.of(0));
+        }
+    }
+
+    @Test
+    void pageLoadsWithFixedStatementCount() {
+        assertEquals(EXPECTED_STATEMENTS, statementsForPage(10));
+        assertEquals(EXPECTED_STATEMENTS, statementsForPage(QUESTIONS));
+    }
+
+    /**
+     * 在一个会话内取一页并访问序列化时会用到的延迟集合，返回执行的语句数
+     */
+    private long statementsForPage(int size) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<WrongQuestion> page = wrongQuestionService.getWrongQuestions(user.getId(), courseId, null, null, size);
+            assertEquals(size, page.size());
+            for (WrongQuestion wq : page) {
+                wq.getUserAnswer().size();
+                wq.getQuestion().getOptions().size();
+                wq.getQuestion().getAnswer().size();
+            }
+        });
+        return statistics.getPrepareStatementCount();
+    }
+}
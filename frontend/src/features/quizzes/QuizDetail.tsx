@@ -2,7 +2,7 @@ import { useState, useEffect } from "react";
 import { useParams, useNavigate } from "react-router-dom";
 import { ArrowLeft, CheckCircle, RotateCcw, XCircle } from "lucide-react";
 import type { Quiz, QuizAttempt, AttemptResult } from "@/shared/types";
-import { quizAPI, wrongQuestionAPI } from "@/shared/api";
+import { quizAPI } from "@/shared/api";
 import { useCourseStore } from "@/shared/stores";
 import { useToast } from "@/shared/components";
 import { getErrorMessage } from "@/shared/utils";
@@ -49,7 +49,14 @@ const QuizDetail = () => {
     if (!course || !quizId) return;
     try {
       const response = await quizAPI.getQuiz(course.id, quizId);
-      setQuiz(response.data);
+      const data = response.data;
+      // 判分按本人的抽题/乱序版本换算选项位置，作答的题目须取自 /variant；限时测验只经考试会话作答
+      if (data.timeLimitMinutes == null) {
+        const variant = await quizAPI.getVariant(course.id, quizId);
+        setQuiz({ ...data, questions: variant.data.questions });
+      } else {
+        setQuiz(data);
+      }
     } catch {
       setError("获取测验失败");
     } finally {
@@ -107,42 +114,13 @@ const QuizDetail = () => {
       );
       setAttempt(response.data);
 
-      {
-        const wrongQuestions: {
-          questionEntityId: number;
-          userAnswer: number[];
-          questionId: string;
-        }[] = [];
-        response.data.results.forEach((result: AttemptResult) => {
-          if (!result.correct && result.questionEntityId !== undefined) {
-            const questionId = result.questionId;
-            const userAnswer = answers[questionId] ?? [];
-            wrongQuestions.push({
-              questionEntityId: result.questionEntityId,
-              userAnswer: userAnswer,
-              questionId: questionId,
-            });
-          }
-        });
-
-        for (const wq of wrongQuestions) {
-          try {
-            await wrongQuestionAPI.addWrongQuestion(
-              course.id,
-              wq.questionEntityId,
-              wq.userAnswer,
-            );
-          } catch (err: unknown) {
-            console.error(
-              "Failed to add wrong question:",
-              getErrorMessage(err),
-            );
-          }
-        }
-
-        if (wrongQuestions.length > 0) {
-          success(`已自动添加 ${String(wrongQuestions.length)} 道错题到错题本`);
-        }
+      // 错题由服务端在判分后自动加入错题本
+      const wrongCount = response.data.results.filter(
+        (result: AttemptResult) =>
+          !result.correct && result.questionEntityId !== undefined,
+      ).length;
+      if (wrongCount > 0) {
+        success(`已自动添加 ${String(wrongCount)} 道错题到错题本`);
       }
     } catch (err: unknown) {
       setError("提交测验失败: " + getErrorMessage(err));
@@ -154,6 +132,8 @@ const QuizDetail = () => {
   const handleReset = () => {
     setAnswers({});
     setAttempt(null);
+    // 重新作答是新的一次作答，抽题/乱序版本随之变化
+    void fetchQuiz();
   };
 
   if (!course) {
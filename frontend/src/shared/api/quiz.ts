@@ -1,11 +1,15 @@
 import api from "./apiClient";
-import type { Quiz, QuizAttempt } from "@/shared/types";
+import type { Quiz, QuizAttempt, QuizVariant } from "@/shared/types";
 
 export const quizAPI = {
   getQuizzes: (courseId: number) =>
     api.get<Quiz[]>(`/api/courses/${String(courseId)}/quizzes`),
   getQuiz: (courseId: number, quizId: string) =>
     api.get<Quiz>(`/api/courses/${String(courseId)}/quizzes/${quizId}`),
+  getVariant: (courseId: number, quizId: string) =>
+    api.get<QuizVariant>(
+      `/api/courses/${String(courseId)}/quizzes/${quizId}/variant`,
+    ),
   createQuiz: (courseId: number, quizData: Partial<Quiz>) =>
     api.post<Quiz>(`/api/courses/${String(courseId)}/quizzes`, quizData),
   updateQuiz: (courseId: number, quizId: string, quizData: Partial<Quiz>) =>
@@ -6,10 +6,20 @@ export interface Quiz {
   courseId: number;
   title: string;
   questions: QuizQuestion[];
+  timeLimitMinutes?: number | null;
+  drawCount?: number | null;
+  shuffle?: boolean | null;
   authorId: number;
   createdAt: string;
 }
 
+/** 当前用户本次作答的题目版本（抽题/乱序后的顺序，选项按展示位置排列） */
+export interface QuizVariant {
+  quizId: string;
+  attempt: number;
+  questions: QuizQuestion[];
+}
+
 export interface QuizQuestion {
   id: string;
   type: "single" | "multiple" | "truefalse";